@@ -0,0 +1,41 @@
+package com.st.chatbot_whatsapp.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Protège les endpoints opérateur (diffusions, tenants) par le jeton d'administration (en-tête X-Admin-Token)
+ * Sans jeton configuré, ces endpoints sont désactivés
+ */
+@Component
+@Slf4j
+public class AdminTokenInterceptor implements HandlerInterceptor {
+
+    static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+
+    @Value("${whatsapp.admin.token:}")
+    private String adminToken;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (isAuthorized(request.getHeader(ADMIN_TOKEN_HEADER))) {
+            return true;
+        }
+        log.warn("Unauthorized admin request {} {}", request.getMethod(), request.getRequestURI());
+        response.setStatus(HttpStatus.FORBIDDEN.value());
+        return false;
+    }
+
+    private boolean isAuthorized(String token) {
+        return !adminToken.isEmpty() && token != null
+                && MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+}
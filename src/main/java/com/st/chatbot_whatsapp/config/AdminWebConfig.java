@@ -0,0 +1,21 @@
+package com.st.chatbot_whatsapp.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Endpoints opérateur soumis au jeton d'administration
+ */
+@Configuration
+@RequiredArgsConstructor
+public class AdminWebConfig implements WebMvcConfigurer {
+
+    private final AdminTokenInterceptor adminTokenInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(adminTokenInterceptor).addPathPatterns("/broadcast/**", "/tenants/**");
+    }
+}
@@ -0,0 +1,24 @@
+package com.st.chatbot_whatsapp.config;
+
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Active les caches Caffeine déclarés via @Cacheable / @CachePut
+ * (contextes utilisateurs et météo, cf. spring.cache.caffeine.spec)
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    /**
+     * Mode asynchrone requis pour mettre en cache les Mono retournés par WeatherService
+     */
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> caffeineAsyncCacheMode() {
+        return cacheManager -> cacheManager.setAsyncCacheMode(true);
+    }
+}
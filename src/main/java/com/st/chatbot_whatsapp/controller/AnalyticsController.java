@@ -0,0 +1,32 @@
+package com.st.chatbot_whatsapp.controller;
+
+import com.st.chatbot_whatsapp.dto.AnalyticsReport;
+import com.st.chatbot_whatsapp.service.AnalyticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private final AnalyticsService analyticsService;
+
+    /**
+     * Top des intentions et des villes sur les dernières minutes (lu depuis les agrégats par minute)
+     */
+    @GetMapping("/top")
+    public ResponseEntity<AnalyticsReport> top(
+            @RequestParam(value = "window", defaultValue = "60") long windowMinutes,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+
+        if (windowMinutes <= 0 || limit <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(analyticsService.getReport(windowMinutes, limit));
+    }
+}
@@ -0,0 +1,65 @@
+package com.st.chatbot_whatsapp.controller;
+
+import com.st.chatbot_whatsapp.dto.BroadcastRequest;
+import com.st.chatbot_whatsapp.model.BroadcastStatus;
+import com.st.chatbot_whatsapp.service.BroadcastService;
+import com.st.chatbot_whatsapp.service.TenantRegistry;
+import com.st.chatbot_whatsapp.service.TenantRuntime;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Endpoints opérateur pour les annonces (protégés par le jeton d'administration, cf. AdminTokenInterceptor)
+ */
+@RestController
+@RequestMapping("/broadcast")
+@RequiredArgsConstructor
+public class BroadcastController {
+
+    private final BroadcastService broadcastService;
+    private final TenantRegistry tenantRegistry;
+
+    @PostMapping
+    public ResponseEntity<BroadcastStatus> start(@RequestBody BroadcastRequest request) {
+        if (request.getMessage() == null || request.getMessage().isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Optional<TenantRuntime> tenant = request.getTenant() == null
+                ? Optional.of(tenantRegistry.getDefault())
+                : tenantRegistry.get(request.getTenant());
+        if (tenant.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok(broadcastService.startBroadcast(tenant.get().getId(), request.getMessage(), request.getRecentHours()));
+    }
+
+    @GetMapping
+    public ResponseEntity<List<BroadcastStatus>> list() {
+        return ResponseEntity.ok(broadcastService.getStatuses());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<BroadcastStatus> status(@PathVariable String id) {
+        return toResponse(broadcastService.getStatus(id));
+    }
+
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<BroadcastStatus> cancel(@PathVariable String id) {
+        return toResponse(broadcastService.cancel(id));
+    }
+
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<BroadcastStatus> resume(@PathVariable String id) {
+        return toResponse(broadcastService.resume(id));
+    }
+
+    private ResponseEntity<BroadcastStatus> toResponse(Optional<BroadcastStatus> status) {
+        return status.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
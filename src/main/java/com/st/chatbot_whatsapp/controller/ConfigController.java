@@ -0,0 +1,25 @@
+package com.st.chatbot_whatsapp.controller;
+
+import com.st.chatbot_whatsapp.dto.ConfigStatus;
+import com.st.chatbot_whatsapp.service.LanguageBundleService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/config")
+@RequiredArgsConstructor
+public class ConfigController {
+
+    private final LanguageBundleService bundleService;
+
+    /**
+     * Version de configuration active, temps de compilation et dernière erreur de rechargement
+     */
+    @GetMapping("/status")
+    public ResponseEntity<ConfigStatus> status() {
+        return ResponseEntity.ok(bundleService.getStatus());
+    }
+}
@@ -0,0 +1,39 @@
+package com.st.chatbot_whatsapp.controller;
+
+import com.st.chatbot_whatsapp.dto.TenantStatus;
+import com.st.chatbot_whatsapp.service.TenantRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Endpoints opérateur des tenants (protégés par le jeton d'administration, cf. AdminTokenInterceptor)
+ */
+@RestController
+@RequestMapping("/tenants")
+@RequiredArgsConstructor
+public class TenantController {
+
+    private final TenantRegistry tenantRegistry;
+
+    /**
+     * Charge de chaque tenant : workers, files et refus
+     */
+    @GetMapping
+    public ResponseEntity<List<TenantStatus>> list() {
+        return ResponseEntity.ok(tenantRegistry.getStatus());
+    }
+
+    /**
+     * Relit le fichier des tenants ; 409 et registre inchangé si la configuration est invalide
+     */
+    @PostMapping("/reload")
+    public ResponseEntity<List<TenantStatus>> reload() {
+        if (!tenantRegistry.reload()) {
+            return ResponseEntity.status(409).build();
+        }
+        return ResponseEntity.ok(tenantRegistry.getStatus());
+    }
+}
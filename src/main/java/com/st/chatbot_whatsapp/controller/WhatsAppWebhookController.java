@@ -1,10 +1,15 @@
 package com.st.chatbot_whatsapp.controller;
 
 import com.st.chatbot_whatsapp.dto.WebhookRequest;
+import com.st.chatbot_whatsapp.model.Tenant;
+import com.st.chatbot_whatsapp.service.MessageLogPolicy;
+import com.st.chatbot_whatsapp.service.TenantRegistry;
 import com.st.chatbot_whatsapp.service.WhatsAppService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,13 +22,12 @@ public class WhatsAppWebhookController {
     @Value("${whatsapp.api.url}")
     private String whatsappApiUrl;
 
-    @Value("${whatsapp.access.token}")
-    private String accessToken;
-
-    @Value("${whatsapp.phone.number.id}")
-    private String phoneNumberId;
-
     private final WhatsAppService whatsAppService;
+    private final TenantRegistry tenantRegistry;
+    private final MessageLogPolicy messageLog;
+
+    @Value("${whatsapp.shutdown.retry-after-seconds:5}")
+    private long retryAfterSeconds;
 
     @Value("${whatsapp.verify.token}")
     private String verifyToken;
@@ -54,11 +58,18 @@ public class WhatsAppWebhookController {
      */
     @PostMapping
     public ResponseEntity<String> receiveMessage(@RequestBody WebhookRequest request) {
-        log.info("Received webhook: {}", request);
+        // Résumé seulement : le toString() du DTO contient numéros, noms et textes
+        if (log.isDebugEnabled() && messageLog.sample()) {
+            log.debug("Received webhook {}", messageLog.summary(request));
+        }
 
         try {
-            // Traiter le message de manière asynchrone
-            whatsAppService.processIncomingMessage(request);
+            // Arrêt en cours ou workers du tenant saturés : réponse immédiate non-200, Meta renverra l'événement plus tard
+            if (!whatsAppService.processIncomingMessage(request)) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                        .body("RETRY_LATER");
+            }
             return ResponseEntity.ok("EVENT_RECEIVED");
         } catch (Exception e) {
             log.error("Error processing webhook", e);
@@ -66,14 +77,23 @@ public class WhatsAppWebhookController {
         }
     }
 
+    /**
+     * Vérification de la configuration (tenant par défaut) : les secrets ne sont jamais renvoyés, seulement leur présence
+     */
     @GetMapping("/test-config")
     public ResponseEntity<String> testConfig() {
+        Tenant tenant = tenantRegistry.getDefault().getTenant();
         return ResponseEntity.ok(String.format(
-                "Verify Token: %s\nAPI URL: %s\nAccess Token: %s...\nPhone ID: %s",
-                verifyToken,
+                "Verify Token: %s\nAPI URL: %s\nTenant: %s\nAccess Token: %s\nPhone ID: %s",
+                describeSecret(verifyToken),
                 whatsappApiUrl,
-                accessToken.substring(0, 20), // Montre juste le début
-                phoneNumberId
+                tenant.getId(),
+                describeSecret(tenant.getAccessToken()),
+                tenant.getPhoneNumberId()
         ));
     }
+
+    private static String describeSecret(String secret) {
+        return secret == null || secret.isBlank() ? "missing" : "configured (" + secret.length() + " chars)";
+    }
 }
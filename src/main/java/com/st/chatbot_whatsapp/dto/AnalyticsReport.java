@@ -0,0 +1,25 @@
+package com.st.chatbot_whatsapp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class AnalyticsReport {
+    private long windowMinutes;
+    private long events;
+    private long droppedEvents;
+    private double cacheHitRatio;
+    private double averageLatencyMicros;
+    private List<Entry> intents;
+    private List<Entry> cities;
+
+    @Data
+    @Builder
+    public static class Entry {
+        private String key;
+        private long count;
+    }
+}
@@ -0,0 +1,12 @@
+package com.st.chatbot_whatsapp.dto;
+
+import lombok.Data;
+
+@Data
+public class BroadcastRequest {
+    private String message;
+    // Fenêtre d'activité des destinataires (heures), valeur par défaut si absente
+    private Long recentHours;
+    // Tenant dont les utilisateurs sont ciblés, tenant par défaut si absent
+    private String tenant;
+}
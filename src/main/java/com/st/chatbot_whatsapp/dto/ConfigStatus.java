@@ -0,0 +1,19 @@
+package com.st.chatbot_whatsapp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+public class ConfigStatus {
+    private long version;
+    private Instant loadedAt;
+    private long compileMicros;
+    private List<String> languages;
+    private String source;
+    private String lastError;
+    private Instant lastErrorAt;
+}
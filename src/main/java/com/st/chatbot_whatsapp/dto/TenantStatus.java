@@ -0,0 +1,19 @@
+package com.st.chatbot_whatsapp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TenantStatus {
+    private String id;
+    private String phoneNumberId;
+    private boolean defaultTenant;
+    private int activeWorkers;
+    private int queuedMessages;
+    private long rejectedMessages;
+    private int inFlightSends;
+    private int queuedSends;
+    private long rejectedSends;
+    private int templateOverrides;
+}
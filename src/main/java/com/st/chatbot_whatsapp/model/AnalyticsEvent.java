@@ -0,0 +1,18 @@
+package com.st.chatbot_whatsapp.model;
+
+import lombok.Value;
+
+/**
+ * Événement compact émis pour chaque message traité
+ * Les latences sont en microsecondes, -1 quand l'étape n'a pas eu lieu
+ */
+@Value
+public class AnalyticsEvent {
+    long timestamp;
+    Intent intent;
+    String city;
+    boolean cacheHit;
+    long detectMicros;
+    long weatherMicros;
+    long totalMicros;
+}
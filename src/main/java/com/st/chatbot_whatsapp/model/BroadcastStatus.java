@@ -0,0 +1,26 @@
+package com.st.chatbot_whatsapp.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class BroadcastStatus {
+    private String id;
+    private String tenant;
+    private State state;
+    private long total;
+    private long processed;
+    private long sent;
+    private long failed;
+    private double messagesPerSecond;
+    private LocalDateTime startedAt;
+
+    public enum State {
+        RUNNING,    // Envoi en cours
+        PAUSED,     // Interrompu (annulation ou arrêt), reprenable depuis le checkpoint
+        COMPLETED   // Tous les destinataires ont été traités
+    }
+}
@@ -8,9 +8,11 @@ import java.util.List;
 
 @Data
 public class ConversationContext {
+    private String tenantId;
     private String userId;
     private Intent lastIntent;
     private String lastCity;
+    private Language language;
     private LocalDateTime lastInteraction;
     private List<String> messageHistory = new ArrayList<>();
     private int messageCount = 0;
@@ -0,0 +1,15 @@
+package com.st.chatbot_whatsapp.model;
+
+import lombok.Value;
+
+@Value
+public class IntentPrediction {
+    Intent intent;
+    float confidence;
+    Source source;
+
+    public enum Source {
+        MODEL,      // Classifieur statistique, au-dessus du seuil de confiance
+        KEYWORDS    // Règles par mots-clés (repli)
+    }
+}
@@ -0,0 +1,32 @@
+package com.st.chatbot_whatsapp.model;
+
+public enum Language {
+    FR("fr"),     // Français (langue par défaut)
+    EN("en"),     // Anglais
+    ES("es"),     // Espagnol
+    PT("pt");     // Portugais
+
+    public static final Language DEFAULT = FR;
+
+    private final String code;
+
+    Language(String code) {
+        this.code = code;
+    }
+
+    /**
+     * Code ISO 639-1, utilisé pour les ressources et le paramètre lang d'OpenWeatherMap
+     */
+    public String getCode() {
+        return code;
+    }
+
+    public static Language fromCode(String code) {
+        for (Language language : values()) {
+            if (language.code.equalsIgnoreCase(code)) {
+                return language;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported language: " + code);
+    }
+}
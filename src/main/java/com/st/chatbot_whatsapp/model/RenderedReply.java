@@ -0,0 +1,14 @@
+package com.st.chatbot_whatsapp.model;
+
+import lombok.Value;
+
+/**
+ * Réponse déjà formatée, avec sa forme UTF-8 échappée JSON prête pour le corps de la requête sortante
+ */
+@Value
+public class RenderedReply {
+    String text;
+    byte[] jsonEscapedUtf8;
+    // Horodatage de l'observation météo (WeatherResponse.dt) utilisée pour le rendu
+    long observedAt;
+}
@@ -0,0 +1,27 @@
+package com.st.chatbot_whatsapp.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Bilan de l'arrêt : ce qui a été terminé pendant le drainage et ce qui a été abandonné à l'échéance
+ */
+@Data
+@Builder
+public class ShutdownReport {
+    private Instant startedAt;
+    private long drainMillis;
+    private boolean deadlineReached;
+    private long rejectedWebhooks;        // Webhooks refusés (503) depuis le début de l'arrêt, renvoyés par Meta
+    private long completedWork;           // Traitements terminés pendant le drainage
+    private long droppedMessages;         // Messages entrants encore en cours de traitement à l'échéance
+    private long droppedWeatherLookups;   // Appels météo annulés (aucune réponse envoyée)
+    private long droppedReplies;          // Réponses annulées avant confirmation de l'API WhatsApp
+    private long droppedAnalyticsEvents;  // Événements perdus par saturation du tampon d'analytics
+
+    public long getTotalDropped() {
+        return droppedMessages + droppedWeatherLookups + droppedReplies;
+    }
+}
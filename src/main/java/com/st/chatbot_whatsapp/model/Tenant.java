@@ -0,0 +1,32 @@
+package com.st.chatbot_whatsapp.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Numéro WhatsApp Business servi par l'instance : identifiants, budgets et surcharges de réponses
+ */
+@Value
+@Builder
+public class Tenant {
+    String id;
+    String phoneNumberId;
+    String accessToken;
+
+    int maxWorkers;           // Messages traités en parallèle
+    int maxQueuedMessages;    // Messages en attente d'un worker avant refus (503)
+    int maxInFlightSends;     // Envois simultanés vers l'API WhatsApp
+    int maxQueuedSends;       // Envois en attente d'un créneau avant abandon
+    double ratePerSecond;     // Débit d'envoi maximal (0 = illimité)
+
+    // Modèles de réponse surchargés, par langue (clé : "reply.GREETING", "weather.format"...)
+    Map<Language, Map<String, String>> templates;
+
+    @Override
+    public String toString() {
+        // Pas de jeton dans les logs
+        return "Tenant(" + id + ", phoneNumberId=" + phoneNumberId + ")";
+    }
+}
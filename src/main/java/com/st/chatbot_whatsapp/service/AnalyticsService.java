@@ -0,0 +1,379 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.dto.AnalyticsReport;
+import com.st.chatbot_whatsapp.model.AnalyticsEvent;
+import com.st.chatbot_whatsapp.model.Intent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service d'analytics : les événements sont déposés dans un tampon sans verrou sur le chemin critique,
+ * puis un thread d'écriture les regroupe en lots compressés (une colonne par ligne) et en agrégats par minute
+ */
+@Service
+@Slf4j
+public class AnalyticsService {
+
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    private static final long MINUTES_PER_DAY = 24 * 60;
+    private static final int MAX_BATCH = 4096;
+
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HH").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    @Value("${analytics.directory:analytics}")
+    private String directory;
+
+    @Value("${analytics.buffer-size:8192}")
+    private int bufferSize;
+
+    @Value("${analytics.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${analytics.retention-hours:24}")
+    private long retentionHours;
+
+    private EventRingBuffer<AnalyticsEvent> buffer;
+    private ScheduledExecutorService writer;
+
+    // Agrégats par minute (epoch minute), écrits par le seul thread d'écriture, lus par l'endpoint
+    private final ConcurrentSkipListMap<Long, MinuteRollup> rollups = new ConcurrentSkipListMap<>();
+
+    // Lot réutilisé par le thread d'écriture
+    private final List<AnalyticsEvent> batch = new ArrayList<>();
+
+    private long lastPrunedHour;
+
+    @PostConstruct
+    public void start() {
+        buffer = new EventRingBuffer<>(bufferSize);
+        loadRollups();
+
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "analytics-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Analytics started (buffer: {} events, directory: {})", buffer.capacity(), directory);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(5, TimeUnit.SECONDS);
+        flushQuietly();
+    }
+
+    /**
+     * Enregistre un événement sans bloquer : en cas de saturation, il est abandonné et compté
+     */
+    public void record(AnalyticsEvent event) {
+        buffer.offer(event);
+    }
+
+    public long getDroppedEvents() {
+        return buffer.droppedCount();
+    }
+
+    /**
+     * Classement des intentions et des villes sur les dernières minutes, calculé uniquement depuis les agrégats
+     */
+    public AnalyticsReport getReport(long windowMinutes, int limit) {
+        long currentMinute = System.currentTimeMillis() / MINUTE_MILLIS;
+        Collection<MinuteRollup> window = rollups.subMap(currentMinute - windowMinutes, false, currentMinute, true).values();
+
+        Map<String, Long> intents = new HashMap<>();
+        Map<String, Long> cities = new HashMap<>();
+        long events = 0;
+        long cacheHits = 0;
+        long weatherRequests = 0;
+        long latencySum = 0;
+
+        for (MinuteRollup rollup : window) {
+            rollup.intents.forEach((key, count) -> intents.merge(key, count.sum(), Long::sum));
+            rollup.cities.forEach((key, count) -> cities.merge(key, count.sum(), Long::sum));
+            events += rollup.events.sum();
+            cacheHits += rollup.cacheHits.sum();
+            weatherRequests += rollup.weatherRequests.sum();
+            latencySum += rollup.latencyMicrosSum.sum();
+        }
+
+        return AnalyticsReport.builder()
+                .windowMinutes(windowMinutes)
+                .events(events)
+                .droppedEvents(getDroppedEvents())
+                .cacheHitRatio(weatherRequests > 0 ? (double) cacheHits / weatherRequests : 0)
+                .averageLatencyMicros(events > 0 ? (double) latencySum / events : 0)
+                .intents(top(intents, limit))
+                .cities(top(cities, limit))
+                .build();
+    }
+
+    private List<AnalyticsReport.Entry> top(Map<String, Long> counts, int limit) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limit)
+                .map(entry -> AnalyticsReport.Entry.builder().key(entry.getKey()).count(entry.getValue()).build())
+                .toList();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Analytics flush failed", e);
+        }
+    }
+
+    /**
+     * Vide entièrement le tampon (par lots), met à jour les agrégats puis écrit les minutes terminées modifiées
+     */
+    private synchronized void flush() throws IOException {
+        int drained;
+        do {
+            batch.clear();
+            drained = buffer.drainTo(batch::add, MAX_BATCH);
+
+            for (AnalyticsEvent event : batch) {
+                rollups.computeIfAbsent(event.getTimestamp() / MINUTE_MILLIS, MinuteRollup::new).add(event);
+            }
+
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        } while (drained == MAX_BATCH);
+
+        // Une minute déjà écrite qui reçoit des événements en retard est réécrite : la dernière version l'emporte au rechargement
+        long currentMinute = System.currentTimeMillis() / MINUTE_MILLIS;
+        for (MinuteRollup rollup : rollups.headMap(currentMinute).values()) {
+            if (rollup.dirty) {
+                writeRollup(rollup);
+                rollup.dirty = false;
+            }
+        }
+
+        rollups.headMap(currentMinute - retentionHours * 60).clear();
+
+        long currentHour = currentMinute / 60;
+        if (currentHour != lastPrunedHour) {
+            pruneFiles(currentMinute * MINUTE_MILLIS - TimeUnit.HOURS.toMillis(retentionHours));
+            lastPrunedHour = currentHour;
+        }
+    }
+
+    /**
+     * Supprime les fichiers sortis de la fenêtre de rétention
+     */
+    private void pruneFiles(long oldestMillis) throws IOException {
+        Path dir = Paths.get(directory);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                if (Files.getLastModifiedTime(file).toMillis() < oldestMillis) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Écrit un lot dans les fichiers horaires de ses événements : un lot à cheval sur deux heures est réparti
+     */
+    private void writeBatch(List<AnalyticsEvent> events) throws IOException {
+        long firstHour = events.get(0).getTimestamp() / HOUR_MILLIS;
+        if (events.stream().allMatch(event -> event.getTimestamp() / HOUR_MILLIS == firstHour)) {
+            writeHour(firstHour, events);
+            return;
+        }
+
+        Map<Long, List<AnalyticsEvent>> eventsByHour = new TreeMap<>();
+        for (AnalyticsEvent event : events) {
+            eventsByHour.computeIfAbsent(event.getTimestamp() / HOUR_MILLIS, hour -> new ArrayList<>()).add(event);
+        }
+        for (Map.Entry<Long, List<AnalyticsEvent>> entry : eventsByHour.entrySet()) {
+            writeHour(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Écrit les événements d'une heure en colonnes dans son fichier (un membre gzip par lot, concaténables)
+     */
+    private void writeHour(long hour, List<AnalyticsEvent> events) throws IOException {
+        Path file = Paths.get(directory, "events-" + HOUR_FORMAT.format(Instant.ofEpochMilli(hour * HOUR_MILLIS)) + ".col.gz");
+        Files.createDirectories(file.getParent());
+
+        try (Writer out = gzipAppender(file)) {
+            out.write("#rows=" + events.size() + "\n");
+            writeColumn(out, "ts", events, event -> Long.toString(event.getTimestamp()));
+            writeColumn(out, "intent", events, event -> event.getIntent().name());
+            writeColumn(out, "city", events, event -> event.getCity() != null ? event.getCity().replace(',', ' ') : "");
+            writeColumn(out, "cache_hit", events, event -> event.isCacheHit() ? "1" : "0");
+            writeColumn(out, "detect_us", events, event -> Long.toString(event.getDetectMicros()));
+            writeColumn(out, "weather_us", events, event -> Long.toString(event.getWeatherMicros()));
+            writeColumn(out, "total_us", events, event -> Long.toString(event.getTotalMicros()));
+        }
+    }
+
+    private void writeColumn(Writer out, String name, List<AnalyticsEvent> events,
+                             Function<AnalyticsEvent, String> value) throws IOException {
+        out.write(name);
+        out.write('=');
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(value.apply(events.get(i)));
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Ajoute l'agrégat complet d'une minute terminée au fichier du jour (minute,type,clé,compteur)
+     */
+    private void writeRollup(MinuteRollup rollup) throws IOException {
+        Path file = rollupFile(rollup.minute);
+        Files.createDirectories(file.getParent());
+
+        try (Writer out = gzipAppender(file)) {
+            String prefix = rollup.minute + ",";
+            out.write(prefix + "events,," + rollup.events.sum() + "\n");
+            out.write(prefix + "cache_hits,," + rollup.cacheHits.sum() + "\n");
+            out.write(prefix + "weather_requests,," + rollup.weatherRequests.sum() + "\n");
+            out.write(prefix + "latency_us_sum,," + rollup.latencyMicrosSum.sum() + "\n");
+            for (Map.Entry<String, LongAdder> entry : rollup.intents.entrySet()) {
+                out.write(prefix + "intent," + entry.getKey() + "," + entry.getValue().sum() + "\n");
+            }
+            for (Map.Entry<String, LongAdder> entry : rollup.cities.entrySet()) {
+                out.write(prefix + "city," + entry.getKey() + "," + entry.getValue().sum() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Recharge les agrégats encore dans la fenêtre de rétention après un redémarrage
+     */
+    private void loadRollups() {
+        long currentMinute = System.currentTimeMillis() / MINUTE_MILLIS;
+        long oldestMinute = currentMinute - retentionHours * 60;
+
+        // Un fichier par jour couvert par la fenêtre de rétention
+        Set<Path> files = new LinkedHashSet<>();
+        for (long minute = oldestMinute; minute < currentMinute; minute += MINUTES_PER_DAY) {
+            files.add(rollupFile(minute));
+        }
+        files.add(rollupFile(currentMinute));
+
+        for (Path file : files) {
+            if (!Files.exists(file)) {
+                continue;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] columns = line.split(",", -1);
+                    long minute = Long.parseLong(columns[0]);
+                    if (columns.length == 4 && minute >= oldestMinute) {
+                        MinuteRollup rollup = rollups.computeIfAbsent(minute, MinuteRollup::new);
+                        rollup.restore(columns[1], columns[2], Long.parseLong(columns[3]));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Unable to load analytics rollups from {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private Path rollupFile(long minute) {
+        return Paths.get(directory, "rollups-" + DAY_FORMAT.format(Instant.ofEpochMilli(minute * MINUTE_MILLIS)) + ".csv.gz");
+    }
+
+    private Writer gzipAppender(Path file) throws IOException {
+        OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(out), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compteurs d'une minute, lisibles par l'endpoint pendant que le thread d'écriture les alimente
+     */
+    private static class MinuteRollup {
+        private final long minute;
+        private final Map<String, LongAdder> intents = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> cities = new ConcurrentHashMap<>();
+        private final LongAdder events = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final LongAdder weatherRequests = new LongAdder();
+        private final LongAdder latencyMicrosSum = new LongAdder();
+        // Modifié depuis sa dernière écriture (seul le thread d'écriture le lit et le modifie)
+        private boolean dirty;
+
+        private MinuteRollup(long minute) {
+            this.minute = minute;
+        }
+
+        private void add(AnalyticsEvent event) {
+            dirty = true;
+            events.increment();
+            latencyMicrosSum.add(Math.max(0, event.getTotalMicros()));
+            intents.computeIfAbsent(event.getIntent().name(), key -> new LongAdder()).increment();
+
+            if (event.getIntent() == Intent.WEATHER && event.getWeatherMicros() >= 0) {
+                weatherRequests.increment();
+                if (event.isCacheHit()) {
+                    cacheHits.increment();
+                }
+            }
+            if (event.getCity() != null && !event.getCity().isEmpty()) {
+                cities.computeIfAbsent(event.getCity().replace(',', ' '), key -> new LongAdder()).increment();
+            }
+        }
+
+        /**
+         * Une minute peut être écrite plusieurs fois (événements en retard) : chaque ligne remplace la précédente
+         */
+        private void restore(String kind, String key, long count) {
+            LongAdder counter = switch (kind) {
+                case "events" -> events;
+                case "cache_hits" -> cacheHits;
+                case "weather_requests" -> weatherRequests;
+                case "latency_us_sum" -> latencyMicrosSum;
+                case "intent" -> intents.computeIfAbsent(key, k -> new LongAdder());
+                case "city" -> cities.computeIfAbsent(key, k -> new LongAdder());
+                default -> null;
+            };
+            if (counter != null) {
+                counter.reset();
+                counter.add(count);
+            }
+        }
+    }
+}
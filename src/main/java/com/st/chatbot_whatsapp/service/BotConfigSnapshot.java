@@ -0,0 +1,60 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.model.Language;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Configuration compilée du bot à un instant donné (ressources de chaque langue déjà chargée)
+ * Jamais modifiée : un rechargement ou une nouvelle langue produisent un nouveau snapshot
+ */
+public final class BotConfigSnapshot {
+
+    private final long version;
+    private final Map<Language, LanguageBundle> bundles;
+    private final Instant loadedAt;
+    private final long compileMicros;
+
+    BotConfigSnapshot(long version, Map<Language, LanguageBundle> bundles, Instant loadedAt, long compileMicros) {
+        this.version = version;
+        Map<Language, LanguageBundle> copy = new EnumMap<>(Language.class);
+        copy.putAll(bundles);
+        this.bundles = Collections.unmodifiableMap(copy);
+        this.loadedAt = loadedAt;
+        this.compileMicros = compileMicros;
+    }
+
+    /**
+     * Copie enrichie d'une langue chargée à la demande (même version), éventuellement servie par le bundle
+     * de la langue par défaut si elle est invalide
+     */
+    BotConfigSnapshot with(Language language, LanguageBundle bundle) {
+        Map<Language, LanguageBundle> copy = new EnumMap<>(Language.class);
+        copy.putAll(bundles);
+        copy.put(language, bundle);
+        return new BotConfigSnapshot(version, copy, loadedAt, compileMicros);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public LanguageBundle getBundle(Language language) {
+        return bundles.get(language);
+    }
+
+    public Map<Language, LanguageBundle> getBundles() {
+        return bundles;
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    public long getCompileMicros() {
+        return compileMicros;
+    }
+}
@@ -0,0 +1,448 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.model.BroadcastStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Service de diffusion d'annonces à tous les utilisateurs récemment actifs
+ * Les envois passent par une file dédiée, limitée en débit et reprenable depuis un checkpoint disque,
+ * pour ne jamais ralentir les réponses interactives
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BroadcastService {
+
+    private static final String RECIPIENTS_SUFFIX = ".recipients";
+    private static final String MESSAGE_SUFFIX = ".message";
+    private static final String TENANT_SUFFIX = ".tenant";
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final String DONE_MARKER = "DONE";
+    private static final String RUNNING_MARKER = "RUNNING";
+    private static final String PAUSED_MARKER = "PAUSED";
+
+    // Code d'erreur Graph API renvoyé quand le débit autorisé du numéro est dépassé
+    private static final String GRAPH_THROUGHPUT_ERROR = "130429";
+
+    @Value("${whatsapp.broadcast.directory:broadcasts}")
+    private String directory;
+
+    @Value("${whatsapp.broadcast.rate-per-second:20}")
+    private int ratePerSecond;
+
+    @Value("${whatsapp.broadcast.max-in-flight:4}")
+    private int maxInFlight;
+
+    @Value("${whatsapp.broadcast.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${whatsapp.broadcast.checkpoint-every:100}")
+    private int checkpointEvery;
+
+    @Value("${whatsapp.broadcast.recent-hours:24}")
+    private long defaultRecentHours;
+
+    @Value("${whatsapp.broadcast.retention-hours:168}")
+    private long retentionHours;
+
+    private final WhatsAppService whatsAppService;
+    private final ConversationContextService contextService;
+    private final TenantRegistry tenantRegistry;
+    private final MessageLogPolicy messageLog;
+
+    private final Map<String, BroadcastJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    // File dédiée aux diffusions : les réponses interactives n'y passent jamais
+    private final Scheduler lane = Schedulers.newSingle("broadcast-lane");
+
+    /**
+     * Démarre une diffusion vers les utilisateurs d'un tenant actifs sur les dernières heures
+     */
+    public BroadcastStatus startBroadcast(String tenantId, String message, Long recentHours) {
+        Duration window = Duration.ofHours(recentHours != null ? recentHours : defaultRecentHours);
+        if (window.compareTo(contextService.getRecentUsersRetention()) > 0) {
+            log.warn("Broadcast window {} exceeds the recent users retention {}, older users are not reached",
+                    window, contextService.getRecentUsersRetention());
+        }
+        // Séquence : deux diffusions lancées dans la même milliseconde ne partagent pas leurs fichiers
+        String id = "bc-" + Long.toString(System.currentTimeMillis(), 36) + "-" + sequence.incrementAndGet();
+
+        // Snapshot des destinataires écrit au fil de l'eau (l'index ne contient chaque utilisateur qu'une fois) :
+        // l'ordre du fichier sert de référence au checkpoint
+        long total = 0;
+        try {
+            Files.createDirectories(Paths.get(directory));
+            // CREATE_NEW : ne jamais écraser les fichiers d'une autre diffusion
+            Files.writeString(path(id, MESSAGE_SUFFIX), message, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW);
+            Files.writeString(path(id, TENANT_SUFFIX), tenantId, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW);
+            try (Stream<String> userIds = contextService.streamRecentUserIds(tenantId, window);
+                 BufferedWriter writer = Files.newBufferedWriter(path(id, RECIPIENTS_SUFFIX), StandardCharsets.UTF_8,
+                         StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                Iterator<String> recipients = userIds.filter(Objects::nonNull).iterator();
+                while (recipients.hasNext()) {
+                    writer.write(recipients.next());
+                    writer.newLine();
+                    total++;
+                }
+            }
+            writeCheckpoint(id, RUNNING_MARKER, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to prepare broadcast " + id, e);
+        }
+
+        log.info("Broadcast {} prepared for {} recipients of tenant {} (window: {})", id, total, tenantId, window);
+        BroadcastJob job = new BroadcastJob(id, tenantId, message, total, 0);
+        job.state = BroadcastStatus.State.RUNNING;
+        jobs.put(id, job);
+        run(job);
+        return job.toStatus();
+    }
+
+    /**
+     * Reprend une diffusion interrompue ou mise en pause à partir de son dernier checkpoint
+     */
+    public Optional<BroadcastStatus> resume(String id) {
+        return resume(id, true);
+    }
+
+    /**
+     * Vérification et démarrage atomiques (jobs.compute) : deux reprises simultanées ne lancent qu'un seul envoi
+     */
+    private Optional<BroadcastStatus> resume(String id, boolean includePaused) {
+        AtomicReference<BroadcastJob> started = new AtomicReference<>();
+        BroadcastJob job = jobs.compute(id, (key, current) -> {
+            if (current != null && current.state == BroadcastStatus.State.RUNNING) {
+                return current;
+            }
+            BroadcastJob loaded = load(id, includePaused);
+            if (loaded == null) {
+                return current;
+            }
+            loaded.state = BroadcastStatus.State.RUNNING;
+            started.set(loaded);
+            return loaded;
+        });
+
+        if (started.get() != null) {
+            log.info("Resuming broadcast {} at {}/{}", id, job.position.get(), job.total);
+            run(job);
+        }
+        return Optional.ofNullable(job).map(BroadcastJob::toStatus);
+    }
+
+    /**
+     * Relit une diffusion depuis le disque ; null si elle est terminée, introuvable ou en pause (sauf includePaused)
+     */
+    private BroadcastJob load(String id, boolean includePaused) {
+        try {
+            Path checkpointFile = path(id, CHECKPOINT_SUFFIX);
+            if (!Files.exists(checkpointFile)) {
+                return null;
+            }
+
+            Checkpoint checkpoint = Checkpoint.parse(Files.readString(checkpointFile, StandardCharsets.UTF_8));
+            if (checkpoint.state().equals(DONE_MARKER) || (checkpoint.state().equals(PAUSED_MARKER) && !includePaused)) {
+                return null;
+            }
+
+            String message = Files.readString(path(id, MESSAGE_SUFFIX), StandardCharsets.UTF_8);
+            // Diffusions antérieures au multi-numéros : tenant par défaut
+            Path tenantFile = path(id, TENANT_SUFFIX);
+            String tenantId = Files.exists(tenantFile)
+                    ? Files.readString(tenantFile, StandardCharsets.UTF_8).trim()
+                    : tenantRegistry.getDefault().getId();
+            long total;
+            try (Stream<String> lines = Files.lines(path(id, RECIPIENTS_SUFFIX), StandardCharsets.UTF_8)) {
+                total = lines.count();
+            }
+            return new BroadcastJob(id, tenantId, message, total, checkpoint.position());
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Unable to resume broadcast {}", id, e);
+            return null;
+        }
+    }
+
+    /**
+     * Met en pause une diffusion : elle n'est plus reprise automatiquement au démarrage,
+     * seulement sur demande explicite (/resume) à partir de son checkpoint
+     */
+    public Optional<BroadcastStatus> cancel(String id) {
+        BroadcastJob job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+        job.cancelRequested = true;
+        Disposable subscription = job.subscription;
+        if (subscription != null && !subscription.isDisposed()) {
+            subscription.dispose();
+        } else if (job.state == BroadcastStatus.State.PAUSED) {
+            // Déjà interrompue (arrêt précédent) : seul le checkpoint passe en pause
+            writeCheckpointQuietly(id, PAUSED_MARKER, job.position.get());
+        }
+        return Optional.of(job.toStatus());
+    }
+
+    public Optional<BroadcastStatus> getStatus(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(BroadcastJob::toStatus);
+    }
+
+    public List<BroadcastStatus> getStatuses() {
+        return jobs.values().stream().map(BroadcastJob::toStatus).toList();
+    }
+
+    /**
+     * Reprend au démarrage les diffusions interrompues en cours d'envoi par l'instance précédente
+     * (arrêt ou crash) ; celles mises en pause par un opérateur restent en pause
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingBroadcasts() {
+        Path dir = Paths.get(directory);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+
+        pruneCompleted();
+
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(CHECKPOINT_SUFFIX))
+                    .map(name -> name.substring(0, name.length() - CHECKPOINT_SUFFIX.length()))
+                    .forEach(id -> resume(id, false));
+        } catch (IOException e) {
+            log.error("Unable to scan broadcast directory {}", dir, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> {
+            if (job.subscription != null) {
+                job.subscription.dispose();
+            }
+        });
+        lane.dispose();
+    }
+
+    /**
+     * Pipeline d'envoi : lecture en flux du fichier, débit limité, envois concurrents bornés,
+     * traitement dans l'ordre pour que le checkpoint reste exact
+     */
+    private void run(BroadcastJob job) {
+        Path recipients = path(job.id, RECIPIENTS_SUFFIX);
+        Duration interval = Duration.ofNanos(1_000_000_000L / Math.max(1, ratePerSecond));
+
+        job.subscription = Flux.using(
+                        () -> Files.lines(recipients, StandardCharsets.UTF_8),
+                        lines -> Flux.fromStream(lines.skip(job.position.get())),
+                        Stream::close)
+                .subscribeOn(lane)
+                .delayElements(interval, lane)
+                .flatMapSequential(to -> deliver(job, to), Math.max(1, maxInFlight))
+                // Les envois se terminent sur la boucle d'événements HTTP : le checkpoint s'écrit sur la file dédiée
+                .publishOn(lane)
+                .doOnNext(ignored -> {
+                    long position = job.position.incrementAndGet();
+                    if (position % checkpointEvery == 0) {
+                        writeCheckpointQuietly(job.id, RUNNING_MARKER, position);
+                    }
+                })
+                .doFinally(signal -> finish(job, signal))
+                .subscribe();
+        // Annulation arrivée avant que l'abonnement ne soit publié
+        if (job.cancelRequested) {
+            job.subscription.dispose();
+        }
+    }
+
+    /**
+     * Hors budget d'envoi interactif du tenant : la diffusion a son propre débit et sa propre file
+     * Le tenant est résolu à chaque envoi pour suivre les rechargements du registre (identifiants modifiés)
+     */
+    private Mono<Boolean> deliver(BroadcastJob job, String to) {
+        return Mono.defer(() -> tenantRegistry.get(job.tenantId)
+                        .map(tenant -> whatsAppService.send(tenant, to, job.message))
+                        .orElseGet(() -> Mono.error(new IllegalStateException("Unknown tenant " + job.tenantId))))
+                .retryWhen(Retry.backoff(maxRetries, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .filter(this::isRateLimited))
+                .doOnSuccess(response -> job.sent.incrementAndGet())
+                .thenReturn(Boolean.TRUE)
+                .onErrorResume(error -> {
+                    job.failed.incrementAndGet();
+                    log.warn("Broadcast {}: failed to send to={}: {}", job.id, messageLog.phone(to), error.getMessage());
+                    return Mono.just(Boolean.FALSE);
+                });
+    }
+
+    /**
+     * Limite de débit Graph API : HTTP 429 ou code d'erreur 130429
+     */
+    private boolean isRateLimited(Throwable error) {
+        if (error instanceof WebClientResponseException.TooManyRequests) {
+            return true;
+        }
+        return error instanceof WebClientResponseException responseException
+                && responseException.getResponseBodyAsString().contains(GRAPH_THROUGHPUT_ERROR);
+    }
+
+    private void finish(BroadcastJob job, SignalType signal) {
+        // L'état publié suit le checkpoint écrit
+        if (signal == SignalType.ON_COMPLETE) {
+            writeCheckpointQuietly(job.id, DONE_MARKER, job.position.get());
+            job.state = BroadcastStatus.State.COMPLETED;
+            pruneCompleted();
+        } else {
+            // Pause opérateur persistée comme telle ; un arrêt de l'instance laisse la diffusion à reprendre
+            writeCheckpointQuietly(job.id, job.cancelRequested ? PAUSED_MARKER : RUNNING_MARKER, job.position.get());
+            job.state = BroadcastStatus.State.PAUSED;
+        }
+
+        BroadcastStatus status = job.toStatus();
+        log.info("Broadcast {} {}: {}/{} processed, {} sent, {} failed ({} msg/s)",
+                job.id, status.getState(), status.getProcessed(), status.getTotal(),
+                status.getSent(), status.getFailed(), String.format("%.1f", status.getMessagesPerSecond()));
+    }
+
+    /**
+     * Supprime les fichiers (destinataires compris) des diffusions terminées sorties de la fenêtre de rétention
+     * Les diffusions en pause ou interrompues sont gardées : elles restent reprenables
+     */
+    private void pruneCompleted() {
+        long oldestMillis = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours);
+        try (Stream<Path> files = Files.list(Paths.get(directory))) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(CHECKPOINT_SUFFIX)).toList()) {
+                if (Files.getLastModifiedTime(file).toMillis() >= oldestMillis
+                        || !Checkpoint.parse(Files.readString(file, StandardCharsets.UTF_8)).state().equals(DONE_MARKER)) {
+                    continue;
+                }
+                String name = file.getFileName().toString();
+                String id = name.substring(0, name.length() - CHECKPOINT_SUFFIX.length());
+                for (String suffix : List.of(RECIPIENTS_SUFFIX, MESSAGE_SUFFIX, TENANT_SUFFIX, CHECKPOINT_SUFFIX)) {
+                    Files.deleteIfExists(path(id, suffix));
+                }
+                jobs.remove(id);
+                log.info("Broadcast {} pruned (completed more than {} hours ago)", id, retentionHours);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Unable to prune broadcast directory {}", directory, e);
+        }
+    }
+
+    private void writeCheckpointQuietly(String id, String state, long position) {
+        try {
+            writeCheckpoint(id, state, position);
+        } catch (IOException e) {
+            log.error("Unable to write checkpoint for broadcast {}", id, e);
+        }
+    }
+
+    /**
+     * Écriture atomique (fichier temporaire puis renommage) pour ne jamais lire un checkpoint partiel
+     * Format : "<état> <position>", par exemple "RUNNING 1200" ou "PAUSED 300"
+     */
+    private void writeCheckpoint(String id, String state, long position) throws IOException {
+        Path target = path(id, CHECKPOINT_SUFFIX);
+        Path tmp = path(id, CHECKPOINT_SUFFIX + ".tmp");
+        Files.writeString(tmp, state + " " + position, StandardCharsets.UTF_8);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path path(String id, String suffix) {
+        return Paths.get(directory, id + suffix);
+    }
+
+    /**
+     * Contenu d'un fichier checkpoint ; une position seule (ancien format) vaut diffusion interrompue
+     */
+    private record Checkpoint(String state, long position) {
+
+        private static Checkpoint parse(String content) {
+            String[] parts = content.trim().split("\\s+");
+            if (parts.length == 1) {
+                return DONE_MARKER.equals(parts[0])
+                        ? new Checkpoint(DONE_MARKER, 0)
+                        : new Checkpoint(RUNNING_MARKER, Long.parseLong(parts[0]));
+            }
+            return new Checkpoint(parts[0], Long.parseLong(parts[1]));
+        }
+    }
+
+    /**
+     * État d'exécution d'une diffusion
+     */
+    private static class BroadcastJob {
+        private final String id;
+        private final String tenantId;
+        private final String message;
+        private final long total;
+        private final long resumedAt;
+        private final AtomicLong position;
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startedNanos = System.nanoTime();
+        private volatile BroadcastStatus.State state = BroadcastStatus.State.PAUSED;
+        private volatile Disposable subscription;
+        private volatile boolean cancelRequested;
+
+        private BroadcastJob(String id, String tenantId, String message, long total, long position) {
+            this.id = id;
+            this.tenantId = tenantId;
+            this.message = message;
+            this.total = total;
+            this.resumedAt = position;
+            this.position = new AtomicLong(position);
+        }
+
+        private BroadcastStatus toStatus() {
+            long processed = position.get();
+            double elapsedSeconds = (System.nanoTime() - startedNanos) / 1_000_000_000.0;
+            double rate = elapsedSeconds > 0 ? (processed - resumedAt) / elapsedSeconds : 0;
+
+            return BroadcastStatus.builder()
+                    .id(id)
+                    .tenant(tenantId)
+                    .state(state)
+                    .total(total)
+                    .processed(processed)
+                    .sent(sent.get())
+                    .failed(failed.get())
+                    .messagesPerSecond(rate)
+                    .startedAt(startedAt)
+                    .build();
+        }
+    }
+}
@@ -1,30 +1,69 @@
 package com.st.chatbot_whatsapp.service;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.st.chatbot_whatsapp.model.ConversationContext;
 import com.st.chatbot_whatsapp.model.Intent;
+import com.st.chatbot_whatsapp.model.Language;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.stream.Stream;
 
 /**
  * Service de gestion du contexte conversationnel
- * Permet de maintenir l'historique et le contexte de chaque utilisateur
+ * Permet de maintenir l'historique et le contexte de chaque utilisateur, par tenant : un même numéro
+ * qui écrit à deux numéros business a deux contextes distincts (clé "tenant:utilisateur")
+ *
+ * Les contextes expirent vite (cf. spring.cache.caffeine.spec) : les destinataires des diffusions viennent
+ * d'un index séparé et léger (clé "tenant:utilisateur" vers l'instant de la dernière interaction)
  */
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class ConversationContextService {
 
+    private static final String CONTEXT_CACHE = "context";
+
+    @Value("${conversation.recent-users.max-size:1000000}")
+    private long recentUsersMaxSize;
+
+    @Value("${conversation.recent-users.retention-hours:48}")
+    private long recentUsersRetentionHours;
+
+    private final CacheManager cacheManager;
+    private final MessageLogPolicy messageLog;
+
+    private com.github.benmanes.caffeine.cache.Cache<String, Instant> recentUsers;
+
+    @PostConstruct
+    public void init() {
+        recentUsers = Caffeine.newBuilder()
+                .maximumSize(recentUsersMaxSize)
+                .expireAfterWrite(Duration.ofHours(recentUsersRetentionHours))
+                .build();
+    }
+
     /**
      * Récupère ou crée un contexte pour un utilisateur
      */
-    @Cacheable(value = "context", key = "#userId")
-    public ConversationContext getContext(String userId) {
-        log.info("Creating new context for user: {}", userId);
+    @Cacheable(value = "context", key = "#tenantId + ':' + #userId")
+    public ConversationContext getContext(String tenantId, String userId) {
+        if (log.isInfoEnabled()) {
+            log.info("Creating new context for tenant={} user={}", tenantId, messageLog.phone(userId));
+        }
         ConversationContext context = new ConversationContext();
+        context.setTenantId(tenantId);
         context.setUserId(userId);
         context.setLastInteraction(LocalDateTime.now());
         context.setMessageHistory(new ArrayList<>());
@@ -34,9 +73,13 @@ public class ConversationContextService {
     /**
      * Met à jour le contexte d'un utilisateur
      */
-    @CachePut(value = "context", key = "#userId")
-    public ConversationContext updateContext(String userId, String message, Intent intent, String lastCity) {
-        ConversationContext context = getContext(userId);
+    @CachePut(value = "context", key = "#tenantId + ':' + #userId")
+    public ConversationContext updateContext(String tenantId, String userId, String message, Intent intent,
+                                             String lastCity, Language language) {
+        // Appel interne : on lit le cache directement, le proxy @Cacheable n'intervient pas ici
+        Cache cache = cacheManager.getCache(CONTEXT_CACHE);
+        ConversationContext cached = cache != null ? cache.get(tenantId + ":" + userId, ConversationContext.class) : null;
+        ConversationContext context = cached != null ? cached : getContext(tenantId, userId);
 
         // Ajouter le message à l'historique (garder les 10 derniers)
         context.getMessageHistory().add(message);
@@ -46,16 +89,39 @@ public class ConversationContextService {
 
         // Mettre à jour les informations
         context.setLastIntent(intent);
+        context.setLanguage(language);
         context.setLastInteraction(LocalDateTime.now());
+        recentUsers.put(tenantId + ":" + userId, Instant.now());
 
         if (lastCity != null && !lastCity.isEmpty()) {
             context.setLastCity(lastCity);
         }
 
-        log.debug("Updated context for user {}: {}", userId, context);
+        // Pas de toString() du contexte : il contient l'historique des messages
+        if (log.isDebugEnabled()) {
+            log.debug("Updated context user={} intent={} lang={} history={}", messageLog.phone(userId), intent,
+                    language != null ? language.getCode() : null, context.getMessageHistory().size());
+        }
         return context;
     }
 
+    /**
+     * Parcourt les utilisateurs d'un tenant actifs sur la fenêtre donnée, depuis l'index des utilisateurs récents
+     * (itération faiblement cohérente, sans copie de l'ensemble ; chaque utilisateur n'apparaît qu'une fois)
+     * La fenêtre est limitée à conversation.recent-users.retention-hours
+     */
+    public Stream<String> streamRecentUserIds(String tenantId, Duration window) {
+        String prefix = tenantId + ":";
+        Instant since = Instant.now().minus(window);
+        return recentUsers.asMap().entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(prefix) && entry.getValue().isAfter(since))
+                .map(entry -> entry.getKey().substring(prefix.length()));
+    }
+
+    public Duration getRecentUsersRetention() {
+        return Duration.ofHours(recentUsersRetentionHours);
+    }
+
     /**
      * Vérifie si l'utilisateur a une ville en contexte
      */
@@ -72,21 +138,17 @@ public class ConversationContextService {
     /**
      * Génère une réponse contextuelle intelligente
      */
-    public String generateSmartResponse(ConversationContext context, Intent currentIntent) {
+    public String generateSmartResponse(ConversationContext context, Intent currentIntent, LanguageBundle bundle) {
         // Si l'utilisateur demande la météo mais n'a pas spécifié de ville
         if (currentIntent == Intent.WEATHER && hasRecentCity(context)) {
-            return String.format(
-                    "🤔 Tu veux la météo pour *%s* comme la dernière fois ? Ou tu veux une autre ville ?",
-                    context.getLastCity()
-            );
+            return bundle.format("reply.smart.last-city", context.getLastCity());
         }
 
         // Si c'est une salutation et qu'on a déjà interagi
         if (currentIntent == Intent.GREETING && !context.getMessageHistory().isEmpty()) {
-            return String.format(
-                    "Re-bonjour ! 👋 Content de te revoir ! Tu veux la météo d'une ville ?%s",
+            return bundle.format("reply.smart.greeting-again",
                     context.getLastCity() != null ?
-                            String.format(" (La dernière fois c'était %s)", context.getLastCity()) : ""
+                            bundle.format("reply.smart.greeting-last-city", context.getLastCity()) : ""
             );
         }
 
@@ -0,0 +1,81 @@
+package com.st.chatbot_whatsapp.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Tampon circulaire borné, sans verrou, multi-producteurs / consommateur unique
+ * Les producteurs réservent un slot par CAS et publient l'élément ; si le tampon est plein,
+ * l'élément est abandonné plutôt que de bloquer le thread appelant
+ */
+class EventRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int capacity;
+    private final int mask;
+
+    // Prochain slot à écrire (producteurs)
+    private final AtomicLong tail = new AtomicLong();
+
+    // Prochain slot à lire, modifié uniquement par le consommateur
+    private volatile long head;
+
+    private final LongAdder dropped = new LongAdder();
+
+    EventRingBuffer(int requestedCapacity) {
+        // Capacité arrondie à la puissance de 2 supérieure pour indexer par masque
+        this.capacity = 1 << (32 - Integer.numberOfLeadingZeros(Math.max(2, requestedCapacity) - 1));
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Ajoute un élément, retourne false (et compte une perte) si le tampon est plein
+     */
+    boolean offer(T element) {
+        long position;
+        do {
+            position = tail.get();
+            if (position - head >= capacity) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(position, position + 1));
+
+        slots.lazySet((int) position & mask, element);
+        return true;
+    }
+
+    /**
+     * Transmet au plus max éléments publiés au consommateur (à appeler depuis un seul thread)
+     */
+    int drainTo(Consumer<T> sink, int max) {
+        long position = head;
+        int drained = 0;
+
+        while (drained < max) {
+            int index = (int) position & mask;
+            T element = slots.get(index);
+            if (element == null) {
+                break; // Slot réservé mais pas encore publié, ou tampon vide
+            }
+            slots.lazySet(index, null);
+            sink.accept(element);
+            position++;
+            drained++;
+        }
+
+        head = position;
+        return drained;
+    }
+
+    long droppedCount() {
+        return dropped.sum();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
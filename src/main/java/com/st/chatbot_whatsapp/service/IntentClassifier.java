@@ -0,0 +1,109 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.model.Intent;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Classifieur statistique d'intentions chargé depuis le modèle embarqué
+ * Les tampons de travail sont réutilisés par thread : une prédiction n'alloue rien
+ */
+@Service
+@Slf4j
+public class IntentClassifier {
+
+    private static final int INITIAL_TEXT_CAPACITY = 512;
+
+    @Value("${intent.classifier.model:nlp/intent-model.bin.gz}")
+    private String modelResource;
+
+    private IntentModel model;
+    private Intent[] intents;
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(INITIAL_TEXT_CAPACITY));
+
+    @PostConstruct
+    public void load() {
+        ClassPathResource resource = new ClassPathResource(modelResource);
+        if (!resource.exists()) {
+            log.warn("Intent model {} not found, keyword rules only", modelResource);
+            return;
+        }
+
+        try (InputStream in = new GZIPInputStream(resource.getInputStream())) {
+            IntentModel loaded = IntentModel.read(in);
+            String[] labels = loaded.getLabels();
+            Intent[] mapping = new Intent[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                mapping[i] = Intent.valueOf(labels[i]);
+            }
+            this.intents = mapping;
+            this.model = loaded;
+            log.info("Intent model loaded: {} classes", labels.length);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Unable to load intent model {}, keyword rules only", modelResource, e);
+        }
+    }
+
+    public boolean isAvailable() {
+        return model != null;
+    }
+
+    /**
+     * Probabilités par intention, indexées par Intent.ordinal() (taille Intent.values().length)
+     * Retourne l'intention la plus probable, ou null si aucun modèle n'est chargé
+     */
+    public Intent classify(CharSequence text, float[] probabilities) {
+        if (model == null) {
+            return null;
+        }
+
+        Scratch buffers = scratch.get();
+        buffers.ensureCapacity(model, text.length());
+
+        int length = IntentModel.normalize(text, buffers.chars);
+        int count = model.extractFeatures(buffers.chars, length, buffers.features);
+        int best = model.predict(buffers.features, count, buffers.classProbabilities);
+
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] = 0f;
+        }
+        for (int c = 0; c < intents.length; c++) {
+            probabilities[intents[c].ordinal()] = buffers.classProbabilities[c];
+        }
+        return intents[best];
+    }
+
+    /**
+     * Tampons de travail d'un thread, agrandis uniquement pour les textes plus longs que prévu
+     */
+    private static class Scratch {
+        private char[] chars;
+        private int[] features;
+        private float[] classProbabilities = new float[Intent.values().length];
+
+        private Scratch(int textCapacity) {
+            this.chars = new char[IntentModel.charBufferSize(textCapacity)];
+        }
+
+        private void ensureCapacity(IntentModel model, int textLength) {
+            if (chars.length < IntentModel.charBufferSize(textLength)) {
+                chars = new char[IntentModel.charBufferSize(textLength)];
+            }
+            int featureSize = model.featureBufferSize(Math.max(textLength, chars.length - 2));
+            if (features == null || features.length < featureSize) {
+                features = new int[featureSize];
+            }
+            if (classProbabilities.length < model.numClasses()) {
+                classProbabilities = new float[model.numClasses()];
+            }
+        }
+    }
+}
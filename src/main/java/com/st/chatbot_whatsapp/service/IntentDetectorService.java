@@ -1,7 +1,11 @@
 package com.st.chatbot_whatsapp.service;
 
 import com.st.chatbot_whatsapp.model.Intent;
+import com.st.chatbot_whatsapp.model.IntentPrediction;
+import com.st.chatbot_whatsapp.model.Language;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -9,47 +13,62 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * Service de détection d'intentions avec NLP basique
+ * Service de détection d'intentions : classifieur statistique, avec repli sur les mots-clés
+ * quand sa confiance est insuffisante. Mots-clés, patterns de ville et réponses viennent des ressources de la langue
  */
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class IntentDetectorService {
 
-    // Patterns pour la détection de ville
-    private static final List<Pattern> CITY_PATTERNS = Arrays.asList(
-            Pattern.compile("(?:météo|meteo|temps|température|temperature)\\s+(?:à|a|de|pour|sur)\\s+([a-zàâäéèêëïîôùûüÿç\\s-]+)", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("(?:à|a|de|pour|sur)\\s+([a-zàâäéèêëïîôùûüÿç\\s-]+)\\s+(?:météo|meteo|temps)", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^([a-zàâäéèêëïîôùûüÿç\\s-]+)\\s+(?:météo|meteo|temps|température)", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("(?:quel(?:le)?\\s+(?:est|temps|météo|meteo)).*?(?:à|a|de|sur)\\s+([a-zàâäéèêëïîôùûüÿç\\s-]+)", Pattern.CASE_INSENSITIVE)
-    );
-
-    // Mots-clés pour chaque intention
-    private static final Map<Intent, List<String>> INTENT_KEYWORDS = Map.of(
-            Intent.WEATHER, Arrays.asList("météo", "meteo", "temps", "température", "temperature", "climat", "pluie", "soleil", "nuage", "vent"),
-            Intent.GREETING, Arrays.asList("bonjour", "salut", "hello", "hi", "bonsoir", "hey", "coucou"),
-            Intent.HELP, Arrays.asList("aide", "help", "comment", "commande", "utiliser", "menu", "fonctionnalités", "fonctionnalites", "quoi faire", "que peux-tu"),
-            Intent.THANKS, Arrays.asList("merci", "thanks", "super", "génial", "cool", "parfait", "excellent"),
-            Intent.GOODBYE, Arrays.asList("au revoir", "bye", "salut", "adieu", "à plus", "a plus", "tchao")
-    );
+    @Value("${intent.classifier.threshold:0.6}")
+    private float confidenceThreshold;
+
+    private final IntentClassifier classifier;
+    private final LanguageBundleService bundles;
+
+    // Probabilités par intention, réutilisées par thread
+    private final ThreadLocal<float[]> probabilities = ThreadLocal.withInitial(() -> new float[Intent.values().length]);
 
     /**
      * Détecte l'intention principale du message
      */
-    public Intent detectIntent(String message) {
+    public Intent detectIntent(String message, Language language) {
+        return detectIntentWithConfidence(message, language).getIntent();
+    }
+
+    /**
+     * Détecte l'intention avec sa confiance : le modèle si sa probabilité atteint le seuil, sinon les mots-clés
+     */
+    public IntentPrediction detectIntentWithConfidence(String message, Language language) {
         if (message == null || message.trim().isEmpty()) {
-            return Intent.UNKNOWN;
+            return new IntentPrediction(Intent.UNKNOWN, 0f, IntentPrediction.Source.KEYWORDS);
         }
 
-        String normalizedMessage = normalizeText(message);
-        log.debug("Analyzing message: {}", normalizedMessage);
+        float[] scores = probabilities.get();
+        Intent predicted = classifier.classify(message, scores);
+        if (predicted != null && scores[predicted.ordinal()] >= confidenceThreshold) {
+            return new IntentPrediction(predicted, scores[predicted.ordinal()], IntentPrediction.Source.MODEL);
+        }
 
-        // Vérifier chaque intention
-        Map<Intent, Integer> scores = new HashMap<>();
+        return detectIntentByKeywords(message, language);
+    }
+
+    /**
+     * Détection par mots-clés (règles historiques)
+     */
+    IntentPrediction detectIntentByKeywords(String message, Language language) {
+        if (message == null || message.trim().isEmpty()) {
+            return new IntentPrediction(Intent.UNKNOWN, 0f, IntentPrediction.Source.KEYWORDS);
+        }
 
-        for (Map.Entry<Intent, List<String>> entry : INTENT_KEYWORDS.entrySet()) {
-            int score = calculateIntentScore(normalizedMessage, entry.getValue());
-            if (score > 0) {
-                scores.put(entry.getKey(), score);
+        String normalizedMessage = normalizeText(message);
+        // Vérifier chaque intention (un seul passage de l'automate des mots-clés)
+        int[] intentScores = bundles.get(language).scoreKeywords(normalizedMessage);
+        Map<Intent, Integer> scores = new EnumMap<>(Intent.class);
+        for (Intent candidate : Intent.values()) {
+            if (intentScores[candidate.ordinal()] > 0) {
+                scores.put(candidate, intentScores[candidate.ordinal()]);
             }
         }
 
@@ -59,26 +78,31 @@ public class IntentDetectorService {
                 .map(Map.Entry::getKey)
                 .orElse(Intent.UNKNOWN);
 
-        log.info("Detected intent: {} with scores: {}", detectedIntent, scores);
-        return detectedIntent;
+        // Confiance : part du meilleur score dans le total
+        int total = scores.values().stream().mapToInt(Integer::intValue).sum();
+        float confidence = total > 0 ? (float) scores.get(detectedIntent) / total : 0f;
+
+        log.debug("Detected intent by keywords: {} with scores: {}", detectedIntent, scores);
+        return new IntentPrediction(detectedIntent, confidence, IntentPrediction.Source.KEYWORDS);
     }
 
     /**
      * Extrait le nom de ville du message
      */
-    public Optional<String> extractCity(String message) {
+    public Optional<String> extractCity(String message, Language language) {
         if (message == null || message.trim().isEmpty()) {
             return Optional.empty();
         }
 
         String normalizedMessage = normalizeText(message);
+        LanguageBundle bundle = bundles.get(language);
 
         // Essayer chaque pattern
-        for (Pattern pattern : CITY_PATTERNS) {
+        for (Pattern pattern : bundle.getCityPatterns()) {
             Matcher matcher = pattern.matcher(normalizedMessage);
             if (matcher.find()) {
                 String city = matcher.group(1).trim();
-                log.info("Extracted city: {} from message: {}", city, message);
+                log.debug("Extracted city: {}", city);
                 return Optional.of(capitalizeCity(city));
             }
         }
@@ -88,39 +112,22 @@ public class IntentDetectorService {
         if (words.length >= 1 && words.length <= 3) {
             // Si le message est court, il pourrait être juste un nom de ville
             String potentialCity = String.join(" ", words);
-            if (potentialCity.length() > 2 && !containsWeatherKeywords(potentialCity)) {
-                log.info("Potential city detected: {}", potentialCity);
+            if (potentialCity.length() > 2 && !containsWeatherKeywords(potentialCity, bundle)) {
+                log.debug("Potential city detected in a short message ({} words)", words.length);
                 return Optional.of(capitalizeCity(potentialCity));
             }
         }
 
-        log.debug("No city found in message: {}", message);
+        log.debug("No city found in message");
         return Optional.empty();
     }
 
-    /**
-     * Calcule le score d'une intention basé sur les mots-clés
-     */
-    private int calculateIntentScore(String message, List<String> keywords) {
-        int score = 0;
-        for (String keyword : keywords) {
-            if (message.contains(keyword)) {
-                score += 10;
-                // Bonus si le mot-clé est au début
-                if (message.startsWith(keyword)) {
-                    score += 5;
-                }
-            }
-        }
-        return score;
-    }
-
     /**
      * Normalise le texte pour la détection
      */
     private String normalizeText(String text) {
         return text.toLowerCase()
-                .replaceAll("[^a-zàâäéèêëïîôùûüÿç0-9\\s-]", "")
+                .replaceAll("[^\\p{L}0-9\\s-]", "")
                 .trim();
     }
 
@@ -145,44 +152,20 @@ public class IntentDetectorService {
     /**
      * Vérifie si le texte contient des mots-clés météo
      */
-    private boolean containsWeatherKeywords(String text) {
-        return INTENT_KEYWORDS.get(Intent.WEATHER).stream()
-                .anyMatch(text::contains);
+    private boolean containsWeatherKeywords(String text, LanguageBundle bundle) {
+        return bundle.containsKeyword(text, Intent.WEATHER);
     }
 
     /**
-     * Génère une réponse contextuelle basée sur l'intention
+     * Génère une réponse contextuelle basée sur l'intention, avec les modèles de la langue (et du tenant)
      */
-    public String generateContextualResponse(Intent intent, String userName) {
-        String name = (userName != null && !userName.isEmpty()) ? userName : "l'ami";
+    public String generateContextualResponse(Intent intent, String userName, LanguageBundle bundle) {
+        String name = (userName != null && !userName.isEmpty()) ? userName : bundle.template("reply.default-name");
 
         return switch (intent) {
-            case GREETING -> String.format("Salut %s ! 👋 Je suis ton assistant météo. Donne-moi une ville et je te dis le temps qu'il fait ! ☀️🌧️", name);
-            case HELP -> """
-                🤖 *Voici comment m'utiliser :*
-                
-                📍 Demande la météo : 
-                • "Météo à Paris"
-                • "Quel temps fait-il à Lyon ?"
-                • "Température Londres"
-                • Ou juste "Paris"
-                
-                💬 Tu peux aussi me dire :
-                • Bonjour / Salut
-                • Merci
-                • Au revoir
-                
-                Je comprends le langage naturel ! 🧠
-                """;
-            case THANKS -> "De rien ! 😊 N'hésite pas si tu veux la météo d'une autre ville !";
-            case GOODBYE -> "À bientôt ! 👋 Reviens quand tu veux pour la météo !";
-            case WEATHER -> "🌤️ Donne-moi le nom d'une ville et je te dirai la météo ! (Ex: Paris, Londres, Tokyo...)";
-            default -> """
-                🤔 Je n'ai pas bien compris... 
-                
-                Demande-moi la météo d'une ville (Ex: "Météo à Paris")
-                Ou tape "aide" pour voir ce que je peux faire !
-                """;
+            case GREETING -> bundle.format("reply.GREETING", name);
+            case HELP, THANKS, GOODBYE, WEATHER -> bundle.template("reply." + intent.name());
+            default -> bundle.template("reply.UNKNOWN");
         };
     }
 }
@@ -0,0 +1,225 @@
+package com.st.chatbot_whatsapp.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Modèle de classification d'intentions : régression logistique multinomiale sur des n-grammes
+ * de caractères hachés. Les poids sont stockés à plat dans un float[] (bucket * nbClasses + classe)
+ * Toutes les méthodes de prédiction travaillent sur des tampons fournis par l'appelant : aucune allocation
+ */
+public final class IntentModel {
+
+    private static final int MAGIC = 0x494E5431; // "INT1"
+
+    private static final int FNV_OFFSET = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private final String[] labels;
+    private final int minN;
+    private final int maxN;
+    private final int bucketMask;
+    private final float[] weights;
+    private final float[] bias;
+
+    public IntentModel(String[] labels, int minN, int maxN, int buckets) {
+        this(labels, minN, maxN, buckets, new float[buckets * labels.length], new float[labels.length]);
+    }
+
+    private IntentModel(String[] labels, int minN, int maxN, int buckets, float[] weights, float[] bias) {
+        if (Integer.bitCount(buckets) != 1) {
+            throw new IllegalArgumentException("Bucket count must be a power of two: " + buckets);
+        }
+        this.labels = labels;
+        this.minN = minN;
+        this.maxN = maxN;
+        this.bucketMask = buckets - 1;
+        this.weights = weights;
+        this.bias = bias;
+    }
+
+    public String[] getLabels() {
+        return labels.clone();
+    }
+
+    public int numClasses() {
+        return labels.length;
+    }
+
+    /**
+     * Taille minimale du tampon de caractères pour un texte de longueur donnée
+     */
+    public static int charBufferSize(int textLength) {
+        return textLength + 2;
+    }
+
+    /**
+     * Taille minimale du tampon de features pour un texte de longueur donnée
+     */
+    public int featureBufferSize(int textLength) {
+        return charBufferSize(textLength) * (maxN - minN + 1);
+    }
+
+    /**
+     * Normalise le texte dans out : minuscules, accents retirés, ponctuation remplacée par des espaces,
+     * espaces fusionnés, un espace de bordure de chaque côté. Retourne la longueur utile
+     */
+    public static int normalize(CharSequence text, char[] out) {
+        int length = 0;
+        out[length++] = ' ';
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(Character.toLowerCase(text.charAt(i)));
+            if (c == ' ' && out[length - 1] == ' ') {
+                continue;
+            }
+            out[length++] = c;
+        }
+
+        if (out[length - 1] != ' ') {
+            out[length++] = ' ';
+        }
+        return length;
+    }
+
+    /**
+     * Retire les accents usuels, remplace tout ce qui n'est ni lettre ni chiffre par un espace
+     */
+    private static char fold(char c) {
+        return switch (c) {
+            case 'à', 'â', 'ä', 'á', 'ã' -> 'a';
+            case 'é', 'è', 'ê', 'ë' -> 'e';
+            case 'î', 'ï', 'í' -> 'i';
+            case 'ô', 'ö', 'ó', 'õ' -> 'o';
+            case 'ù', 'û', 'ü', 'ú' -> 'u';
+            case 'ÿ' -> 'y';
+            case 'ç' -> 'c';
+            case 'ñ' -> 'n';
+            default -> Character.isLetterOrDigit(c) ? c : ' ';
+        };
+    }
+
+    /**
+     * Calcule les buckets des n-grammes (minN..maxN) du texte normalisé, retourne leur nombre
+     */
+    public int extractFeatures(char[] chars, int length, int[] out) {
+        int count = 0;
+        for (int start = 0; start < length; start++) {
+            int hash = FNV_OFFSET;
+            int end = Math.min(length, start + maxN);
+            for (int i = start; i < end; i++) {
+                hash = (hash ^ chars[i]) * FNV_PRIME;
+                if (i - start + 1 >= minN) {
+                    out[count++] = (hash ^ (hash >>> 15)) & bucketMask;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Remplit probabilities (softmax) et retourne l'indice de la classe la plus probable
+     */
+    public int predict(int[] features, int count, float[] probabilities) {
+        int classes = labels.length;
+        float scale = count > 0 ? (float) (1.0 / Math.sqrt(count)) : 0f;
+
+        System.arraycopy(bias, 0, probabilities, 0, classes);
+        for (int f = 0; f < count; f++) {
+            int offset = features[f] * classes;
+            for (int c = 0; c < classes; c++) {
+                probabilities[c] += weights[offset + c] * scale;
+            }
+        }
+
+        return softmax(probabilities, classes);
+    }
+
+    private static int softmax(float[] values, int classes) {
+        int best = 0;
+        for (int c = 1; c < classes; c++) {
+            if (values[c] > values[best]) {
+                best = c;
+            }
+        }
+
+        float max = values[best];
+        float sum = 0f;
+        for (int c = 0; c < classes; c++) {
+            values[c] = (float) Math.exp(values[c] - max);
+            sum += values[c];
+        }
+        for (int c = 0; c < classes; c++) {
+            values[c] /= sum;
+        }
+        return best;
+    }
+
+    /**
+     * Une étape de descente de gradient (entropie croisée + L2) sur un exemple, utilisée par l'entraînement
+     */
+    public void train(int[] features, int count, int label, float learningRate, float l2, float[] scratch) {
+        int classes = labels.length;
+        float scale = count > 0 ? (float) (1.0 / Math.sqrt(count)) : 0f;
+
+        predict(features, count, scratch);
+        scratch[label] -= 1f; // Gradient de l'entropie croisée : p - y
+
+        for (int c = 0; c < classes; c++) {
+            bias[c] -= learningRate * scratch[c];
+        }
+        for (int f = 0; f < count; f++) {
+            int offset = features[f] * classes;
+            for (int c = 0; c < classes; c++) {
+                weights[offset + c] -= learningRate * (scratch[c] * scale + l2 * weights[offset + c]);
+            }
+        }
+    }
+
+    public void write(OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeInt(minN);
+        out.writeInt(maxN);
+        out.writeInt(bucketMask + 1);
+        out.writeInt(labels.length);
+        for (String label : labels) {
+            out.writeUTF(label);
+        }
+        for (float value : bias) {
+            out.writeFloat(value);
+        }
+        for (float value : weights) {
+            out.writeFloat(value);
+        }
+        out.flush();
+    }
+
+    public static IntentModel read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an intent model");
+        }
+
+        int minN = in.readInt();
+        int maxN = in.readInt();
+        int buckets = in.readInt();
+        String[] labels = new String[in.readInt()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = in.readUTF();
+        }
+
+        float[] bias = new float[labels.length];
+        for (int i = 0; i < bias.length; i++) {
+            bias[i] = in.readFloat();
+        }
+        float[] weights = new float[buckets * labels.length];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = in.readFloat();
+        }
+        return new IntentModel(labels, minN, maxN, buckets, weights, bias);
+    }
+}
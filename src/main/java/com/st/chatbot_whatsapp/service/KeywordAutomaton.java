@@ -0,0 +1,208 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.model.Intent;
+
+import java.util.*;
+
+/**
+ * Automate d'Aho-Corasick sur les mots-clés de toutes les intentions : un seul passage sur le message
+ * suffit pour trouver tous les mots-clés présents, quel que soit leur nombre
+ * Les transitions sont stockées dans des tableaux plats (caractères triés par nœud, recherche dichotomique)
+ */
+final class KeywordAutomaton {
+
+    private static final int KEYWORD_SCORE = 10;
+    private static final int PREFIX_BONUS = 5;
+
+    // Transitions du nœud n : edgeChars/edgeTargets[edgeStart[n] .. edgeStart[n + 1])
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] fail;
+
+    // Mots-clés reconnus en arrivant sur le nœud n (suffixes compris) : outputs[outputStart[n] .. outputStart[n + 1])
+    private final int[] outputStart;
+    private final int[] outputs;
+
+    // Par mot-clé : longueur et intentions concernées (masque de bits sur Intent.ordinal())
+    private final int[] keywordLengths;
+    private final int[] keywordIntents;
+
+    private KeywordAutomaton(int[] edgeStart, char[] edgeChars, int[] edgeTargets, int[] fail,
+                             int[] outputStart, int[] outputs, int[] keywordLengths, int[] keywordIntents) {
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.outputStart = outputStart;
+        this.outputs = outputs;
+        this.keywordLengths = keywordLengths;
+        this.keywordIntents = keywordIntents;
+    }
+
+    static KeywordAutomaton compile(Map<Intent, List<String>> keywordsByIntent) {
+        // Mots-clés uniques : un même mot peut appartenir à plusieurs intentions (ex : "salut")
+        Map<String, Integer> keywordIds = new LinkedHashMap<>();
+        List<Integer> intentMasks = new ArrayList<>();
+        keywordsByIntent.forEach((intent, keywords) -> {
+            for (String keyword : keywords) {
+                int id = keywordIds.computeIfAbsent(keyword, k -> {
+                    intentMasks.add(0);
+                    return keywordIds.size();
+                });
+                intentMasks.set(id, intentMasks.get(id) | (1 << intent.ordinal()));
+            }
+        });
+
+        // Construction du trie
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        children.add(new TreeMap<>());
+        nodeOutputs.add(new ArrayList<>());
+
+        int[] keywordLengths = new int[keywordIds.size()];
+        for (Map.Entry<String, Integer> entry : keywordIds.entrySet()) {
+            String keyword = entry.getKey();
+            keywordLengths[entry.getValue()] = keyword.length();
+
+            int node = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                Integer next = children.get(node).get(keyword.charAt(i));
+                if (next == null) {
+                    next = children.size();
+                    children.get(node).put(keyword.charAt(i), next);
+                    children.add(new TreeMap<>());
+                    nodeOutputs.add(new ArrayList<>());
+                }
+                node = next;
+            }
+            nodeOutputs.get(node).add(entry.getValue());
+        }
+
+        // Liens d'échec (parcours en largeur), sorties héritées du suffixe
+        int nodes = children.size();
+        int[] fail = new int[nodes];
+        Deque<Integer> queue = new ArrayDeque<>(children.get(0).values());
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> edge : children.get(node).entrySet()) {
+                int child = edge.getValue();
+                int state = fail[node];
+                while (state != 0 && !children.get(state).containsKey(edge.getKey())) {
+                    state = fail[state];
+                }
+                Integer target = children.get(state).get(edge.getKey());
+                fail[child] = target != null && target != child ? target : 0;
+                nodeOutputs.get(child).addAll(nodeOutputs.get(fail[child]));
+                queue.add(child);
+            }
+        }
+
+        // Aplatissement
+        int[] edgeStart = new int[nodes + 1];
+        int[] outputStart = new int[nodes + 1];
+        for (int node = 0; node < nodes; node++) {
+            edgeStart[node + 1] = edgeStart[node] + children.get(node).size();
+            outputStart[node + 1] = outputStart[node] + nodeOutputs.get(node).size();
+        }
+        char[] edgeChars = new char[edgeStart[nodes]];
+        int[] edgeTargets = new int[edgeStart[nodes]];
+        int[] outputs = new int[outputStart[nodes]];
+        for (int node = 0; node < nodes; node++) {
+            int position = edgeStart[node];
+            for (Map.Entry<Character, Integer> edge : children.get(node).entrySet()) {
+                edgeChars[position] = edge.getKey();
+                edgeTargets[position++] = edge.getValue();
+            }
+            position = outputStart[node];
+            for (int keyword : nodeOutputs.get(node)) {
+                outputs[position++] = keyword;
+            }
+        }
+
+        int[] keywordIntents = intentMasks.stream().mapToInt(Integer::intValue).toArray();
+        return new KeywordAutomaton(edgeStart, edgeChars, edgeTargets, fail, outputStart, outputs, keywordLengths, keywordIntents);
+    }
+
+    /**
+     * Scores par intention (indexés par Intent.ordinal()) : 10 points par mot-clé présent, +5 s'il ouvre le message
+     */
+    int[] score(String text) {
+        int[] scores = new int[Intent.values().length];
+        boolean[] seen = new boolean[keywordLengths.length];
+        boolean[] atStart = new boolean[keywordLengths.length];
+
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            node = next(node, text.charAt(i));
+            for (int o = outputStart[node]; o < outputStart[node + 1]; o++) {
+                int keyword = outputs[o];
+                seen[keyword] = true;
+                if (i + 1 == keywordLengths[keyword]) {
+                    atStart[keyword] = true;
+                }
+            }
+        }
+
+        for (int keyword = 0; keyword < keywordLengths.length; keyword++) {
+            if (!seen[keyword]) {
+                continue;
+            }
+            int points = KEYWORD_SCORE + (atStart[keyword] ? PREFIX_BONUS : 0);
+            int mask = keywordIntents[keyword];
+            for (int intent = 0; intent < scores.length; intent++) {
+                if ((mask & (1 << intent)) != 0) {
+                    scores[intent] += points;
+                }
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Indique si le texte contient au moins un mot-clé de l'intention
+     */
+    boolean containsAny(String text, Intent intent) {
+        int bit = 1 << intent.ordinal();
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            node = next(node, text.charAt(i));
+            for (int o = outputStart[node]; o < outputStart[node + 1]; o++) {
+                if ((keywordIntents[outputs[o]] & bit) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int next(int node, char c) {
+        while (true) {
+            int target = transition(node, c);
+            if (target >= 0) {
+                return target;
+            }
+            if (node == 0) {
+                return 0;
+            }
+            node = fail[node];
+        }
+    }
+
+    private int transition(int node, char c) {
+        int low = edgeStart[node];
+        int high = edgeStart[node + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char candidate = edgeChars[middle];
+            if (candidate < c) {
+                low = middle + 1;
+            } else if (candidate > c) {
+                high = middle - 1;
+            } else {
+                return edgeTargets[middle];
+            }
+        }
+        return -1;
+    }
+}
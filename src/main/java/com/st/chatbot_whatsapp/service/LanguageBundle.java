@@ -0,0 +1,169 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.model.Intent;
+import com.st.chatbot_whatsapp.model.Language;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Ressources compilées d'une langue : automate des mots-clés par intention, patterns de ville et modèles de réponse
+ * Immuable une fois construite, partagée sans synchronisation entre les threads
+ */
+public final class LanguageBundle {
+
+    static final String KEYWORDS_PREFIX = "keywords.";
+    static final String CITY_PATTERN_PREFIX = "city.pattern.";
+
+    // Modèles qui doivent exister dans chaque langue
+    static final List<String> REQUIRED_TEMPLATES = List.of(
+            "reply.default-name", "reply.GREETING", "reply.HELP", "reply.THANKS", "reply.GOODBYE",
+            "reply.WEATHER", "reply.UNKNOWN", "reply.city-not-found", "reply.smart.last-city",
+            "reply.smart.greeting-again", "reply.smart.greeting-last-city", "weather.format", "weather.unavailable"
+    );
+
+    private final Language language;
+    private final Map<Intent, List<String>> keywords;
+    private final KeywordAutomaton keywordAutomaton;
+    private final List<Pattern> cityPatterns;
+    private final Map<String, String> templates;
+
+    private LanguageBundle(Language language, Map<Intent, List<String>> keywords,
+                           List<Pattern> cityPatterns, Map<String, String> templates) {
+        this(language, keywords, KeywordAutomaton.compile(keywords), cityPatterns, templates);
+    }
+
+    private LanguageBundle(Language language, Map<Intent, List<String>> keywords, KeywordAutomaton keywordAutomaton,
+                           List<Pattern> cityPatterns, Map<String, String> templates) {
+        this.language = language;
+        this.keywords = keywords;
+        this.keywordAutomaton = keywordAutomaton;
+        this.cityPatterns = cityPatterns;
+        this.templates = templates;
+    }
+
+    /**
+     * Compile les propriétés d'une langue ; lève IllegalArgumentException si elles sont incomplètes ou invalides
+     */
+    public static LanguageBundle compile(Language language, Properties properties) {
+        Map<Intent, List<String>> keywords = new EnumMap<>(Intent.class);
+        SortedMap<Integer, Pattern> patterns = new TreeMap<>();
+        Map<String, String> templates = new HashMap<>();
+
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key);
+            if (key.startsWith(KEYWORDS_PREFIX)) {
+                Intent intent = Intent.valueOf(key.substring(KEYWORDS_PREFIX.length()));
+                keywords.put(intent, Arrays.stream(value.split(","))
+                        .map(String::trim)
+                        .map(keyword -> keyword.toLowerCase(Locale.ROOT))
+                        .filter(keyword -> !keyword.isEmpty())
+                        .toList());
+            } else if (key.startsWith(CITY_PATTERN_PREFIX)) {
+                Pattern pattern = Pattern.compile(value, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                if (pattern.matcher("").groupCount() < 1) {
+                    throw new IllegalArgumentException(key + " must capture the city in group 1");
+                }
+                patterns.put(Integer.parseInt(key.substring(CITY_PATTERN_PREFIX.length())), pattern);
+            } else {
+                templates.put(key, value);
+            }
+        }
+
+        for (String required : REQUIRED_TEMPLATES) {
+            if (!templates.containsKey(required)) {
+                throw new IllegalArgumentException("Missing template " + required + " for language " + language.getCode());
+            }
+        }
+        if (!keywords.containsKey(Intent.WEATHER)) {
+            throw new IllegalArgumentException("Missing weather keywords for language " + language.getCode());
+        }
+        validateFormats(language, templates);
+
+        return new LanguageBundle(language,
+                Collections.unmodifiableMap(keywords),
+                List.copyOf(patterns.values()),
+                Map.copyOf(templates));
+    }
+
+    /**
+     * Variante avec des modèles de réponse surchargés (ex : par tenant) ; mots-clés et patterns sont partagés
+     * Seuls des modèles existants peuvent être surchargés, avec les mêmes paramètres
+     */
+    public LanguageBundle withTemplates(Map<String, String> overrides) {
+        if (overrides == null || overrides.isEmpty()) {
+            return this;
+        }
+
+        Map<String, String> merged = new HashMap<>(templates);
+        overrides.forEach((key, value) -> {
+            if (!templates.containsKey(key)) {
+                throw new IllegalArgumentException("Unknown template " + key + " for language " + language.getCode());
+            }
+            merged.put(key, value);
+        });
+        validateFormats(language, merged);
+        return new LanguageBundle(language, keywords, keywordAutomaton, cityPatterns, Map.copyOf(merged));
+    }
+
+    /**
+     * Vérifie que les modèles à paramètres acceptent les arguments qui leur seront passés
+     */
+    private static void validateFormats(Language language, Map<String, String> templates) {
+        Map<String, Object[]> samples = Map.of(
+                "reply.GREETING", new Object[]{"name"},
+                "reply.smart.last-city", new Object[]{"City"},
+                "reply.smart.greeting-again", new Object[]{" (City)"},
+                "reply.smart.greeting-last-city", new Object[]{"City"},
+                "weather.format", new Object[]{"☀️", "City", "FR", 20.5, 19.0, "Clear", 12.0, 50, 1013}
+        );
+
+        samples.forEach((key, args) -> {
+            try {
+                String.format(templates.get(key), args);
+            } catch (IllegalFormatException e) {
+                throw new IllegalArgumentException("Invalid template " + key + " for language "
+                        + language.getCode() + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    public Language getLanguage() {
+        return language;
+    }
+
+    public Map<Intent, List<String>> getKeywords() {
+        return keywords;
+    }
+
+    public List<String> getKeywords(Intent intent) {
+        return keywords.getOrDefault(intent, List.of());
+    }
+
+    /**
+     * Scores des mots-clés par intention (indexés par Intent.ordinal()) pour un texte normalisé
+     */
+    public int[] scoreKeywords(String normalizedText) {
+        return keywordAutomaton.score(normalizedText);
+    }
+
+    public boolean containsKeyword(String normalizedText, Intent intent) {
+        return keywordAutomaton.containsAny(normalizedText, intent);
+    }
+
+    public List<Pattern> getCityPatterns() {
+        return cityPatterns;
+    }
+
+    public String template(String key) {
+        String template = templates.get(key);
+        if (template == null) {
+            throw new IllegalArgumentException("Unknown template " + key);
+        }
+        return template;
+    }
+
+    public String format(String key, Object... args) {
+        return String.format(template(key), args);
+    }
+}
@@ -0,0 +1,239 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.dto.ConfigStatus;
+import com.st.chatbot_whatsapp.model.Language;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fournit les ressources de chaque langue depuis le snapshot de configuration courant
+ *
+ * Les ressources embarquées (i18n/{code}.properties) peuvent être surchargées par les fichiers du
+ * répertoire bot.config.directory. Un thread de surveillance recompile la configuration quand ces fichiers
+ * changent (y compris lors de la bascule atomique d'un volume ConfigMap) et publie le nouveau snapshot par simple
+ * échange de référence ; en cas d'erreur de validation, le snapshot précédent reste actif.
+ * Le chemin critique ne prend aucun verrou
+ */
+@Service
+@Slf4j
+public class LanguageBundleService {
+
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    // Lien d'un volume ConfigMap Kubernetes vers la version courante des fichiers, remplacé à chaque mise à jour
+    private static final String CONFIG_MAP_DATA_LINK = "..data";
+
+    @Value("${bot.config.directory:}")
+    private String configDirectory;
+
+    private final AtomicReference<BotConfigSnapshot> current =
+            new AtomicReference<>(new BotConfigSnapshot(0, Map.of(), Instant.now(), 0));
+
+    private volatile String lastError;
+    private volatile Instant lastErrorAt;
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    @PostConstruct
+    public void start() throws IOException {
+        // Validation immédiate de la langue par défaut : une configuration invalide bloque le démarrage
+        get(Language.DEFAULT);
+
+        Path directory = externalDirectory();
+        if (directory == null) {
+            return;
+        }
+        if (!Files.isDirectory(directory)) {
+            log.warn("Bot config directory {} does not exist, bundled resources only", directory);
+            return;
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        watcher = new Thread(this::watch, "bot-config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("Watching bot config directory {}", directory);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Ressources de la langue, compilées à la première demande puis lues sans verrou
+     * Une langue invalide est servie par la langue par défaut jusqu'au prochain rechargement réussi
+     * (mise en cache du repli : le fichier n'est pas relu à chaque message)
+     */
+    public LanguageBundle get(Language language) {
+        Language requested = language != null ? language : Language.DEFAULT;
+
+        while (true) {
+            BotConfigSnapshot snapshot = current.get();
+            LanguageBundle bundle = snapshot.getBundle(requested);
+            if (bundle != null) {
+                return bundle;
+            }
+
+            LanguageBundle loaded;
+            try {
+                loaded = compile(requested);
+            } catch (IOException | IllegalArgumentException e) {
+                if (requested == Language.DEFAULT) {
+                    throw new IllegalStateException("Default language bundle is invalid", e);
+                }
+                lastError = requested.getCode() + ": " + e.getMessage();
+                lastErrorAt = Instant.now();
+                log.error("Unable to load language bundle {}, falling back to {}: {}",
+                        requested.getCode(), Language.DEFAULT.getCode(), e.getMessage());
+                loaded = get(Language.DEFAULT);
+            }
+
+            // Si un rechargement a publié entre-temps, on recommence sur le nouveau snapshot
+            if (current.compareAndSet(snapshot, snapshot.with(requested, loaded))) {
+                return loaded;
+            }
+        }
+    }
+
+    public BotConfigSnapshot getSnapshot() {
+        return current.get();
+    }
+
+    /**
+     * Recompile et valide toutes les langues, puis publie le résultat ; conserve le snapshot actif en cas d'erreur
+     * (y compris pour une langue pas encore demandée : un fichier invalide est toujours rejeté et signalé)
+     */
+    public synchronized boolean reload() {
+        BotConfigSnapshot previous = current.get();
+        long start = System.nanoTime();
+
+        Map<Language, LanguageBundle> bundles = new EnumMap<>(Language.class);
+        try {
+            for (Language language : Language.values()) {
+                bundles.put(language, compile(language));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            lastError = e.getMessage();
+            lastErrorAt = Instant.now();
+            log.error("Bot config reload rejected, keeping version {}: {}", previous.getVersion(), e.getMessage());
+            return false;
+        }
+
+        long compileMicros = (System.nanoTime() - start) / 1_000;
+        BotConfigSnapshot next = new BotConfigSnapshot(previous.getVersion() + 1, bundles, Instant.now(), compileMicros);
+
+        // Toutes les langues sont compilées : un chargement à la demande concurrent recommencera sur ce snapshot
+        current.set(next);
+
+        lastError = null;
+        log.info("Bot config version {} published ({} languages compiled in {} µs)",
+                next.getVersion(), bundles.size(), compileMicros);
+        return true;
+    }
+
+    public ConfigStatus getStatus() {
+        BotConfigSnapshot snapshot = current.get();
+        return ConfigStatus.builder()
+                .version(snapshot.getVersion())
+                .loadedAt(snapshot.getLoadedAt())
+                .compileMicros(snapshot.getCompileMicros())
+                .languages(snapshot.getBundles().entrySet().stream()
+                        .filter(entry -> entry.getValue().getLanguage() == entry.getKey())
+                        .map(entry -> entry.getKey().getCode())
+                        .toList())
+                .source(externalDirectory() != null ? externalDirectory().toString() : "classpath:i18n")
+                .lastError(lastError)
+                .lastErrorAt(lastErrorAt)
+                .build();
+    }
+
+    /**
+     * Ressources embarquées, surchargées clé par clé par le fichier externe s'il existe
+     */
+    private LanguageBundle compile(Language language) throws IOException {
+        String fileName = language.getCode() + ".properties";
+        Properties properties = new Properties();
+
+        try (Reader reader = new InputStreamReader(new ClassPathResource("i18n/" + fileName).getInputStream(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        Path directory = externalDirectory();
+        if (directory != null && Files.isRegularFile(directory.resolve(fileName))) {
+            try (Reader reader = Files.newBufferedReader(directory.resolve(fileName), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+
+        return LanguageBundle.compile(language, properties);
+    }
+
+    private Path externalDirectory() {
+        return configDirectory == null || configDirectory.isBlank() ? null : Paths.get(configDirectory);
+    }
+
+    /**
+     * Boucle de surveillance : regroupe les événements rapprochés (éditeurs qui écrivent en plusieurs fois)
+     */
+    private void watch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                WatchKey key = watchService.take();
+                Thread.sleep(DEBOUNCE_MILLIS);
+                boolean relevant = key.pollEvents().stream().anyMatch(LanguageBundleService::isRelevant);
+
+                WatchKey pending;
+                while ((pending = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    relevant |= pending.pollEvents().stream().anyMatch(LanguageBundleService::isRelevant);
+                    pending.reset();
+                }
+                key.reset();
+
+                if (relevant) {
+                    reload();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Bot config watcher error", e);
+            }
+        }
+    }
+
+    /**
+     * Fichier de langue modifié, lien ..data remplacé (ConfigMap : les fichiers visibles sont des liens
+     * symboliques qui ne produisent eux-mêmes aucun événement) ou événements perdus (OVERFLOW)
+     */
+    private static boolean isRelevant(WatchEvent<?> event) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            return true;
+        }
+        String name = String.valueOf(event.context());
+        return name.endsWith(".properties") || name.equals(CONFIG_MAP_DATA_LINK);
+    }
+}
@@ -0,0 +1,128 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.model.Language;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntConsumer;
+
+/**
+ * Identification de la langue d'un message par profils de trigrammes de caractères (hors ligne)
+ * Les messages trop courts ou ambigus ne sont pas attribués : l'appelant garde alors la langue connue
+ */
+@Service
+@Slf4j
+public class LanguageDetector {
+
+    private static final String PROFILES = "i18n/language-profiles.txt";
+    private static final int BUCKETS = 1 << 12;
+    private static final int MIN_TRIGRAMS = 4;
+
+    @Value("${language.detection.min-margin:0.3}")
+    private double minMargin;
+
+    private Language[] languages;
+
+    // Log-probabilité lissée de chaque bucket de trigramme, par langue
+    private float[][] logProbabilities;
+
+    @PostConstruct
+    public void load() throws IOException {
+        Map<Language, int[]> counts = new EnumMap<>(Language.class);
+        try (InputStream in = new ClassPathResource(PROFILES).getInputStream()) {
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split("\t", 2);
+                int[] languageCounts = counts.computeIfAbsent(Language.fromCode(columns[0].trim()), l -> new int[BUCKETS]);
+                forEachTrigram(columns[1], bucket -> languageCounts[bucket]++);
+            }
+        }
+
+        languages = counts.keySet().toArray(new Language[0]);
+        logProbabilities = new float[languages.length][BUCKETS];
+        for (int l = 0; l < languages.length; l++) {
+            int[] languageCounts = counts.get(languages[l]);
+            long total = 0;
+            for (int count : languageCounts) {
+                total += count;
+            }
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                logProbabilities[l][bucket] = (float) Math.log((languageCounts[bucket] + 1.0) / (total + BUCKETS));
+            }
+        }
+        log.info("Language profiles loaded for {} languages", languages.length);
+    }
+
+    /**
+     * Langue du message, ou vide si le message est trop court ou trop ambigu pour trancher
+     */
+    public Optional<Language> detect(String text) {
+        if (text == null || languages == null) {
+            return Optional.empty();
+        }
+
+        double[] scores = new double[languages.length];
+        int trigrams = forEachTrigram(text, bucket -> {
+            for (int l = 0; l < languages.length; l++) {
+                scores[l] += logProbabilities[l][bucket];
+            }
+        });
+        if (trigrams < MIN_TRIGRAMS) {
+            return Optional.empty();
+        }
+
+        int best = 0;
+        int second = -1;
+        for (int l = 1; l < languages.length; l++) {
+            if (scores[l] > scores[best]) {
+                second = best;
+                best = l;
+            } else if (second < 0 || scores[l] > scores[second]) {
+                second = l;
+            }
+        }
+
+        // Écart moyen par trigramme entre les deux meilleures langues
+        double margin = second < 0 ? Double.MAX_VALUE : (scores[best] - scores[second]) / trigrams;
+        return margin >= minMargin ? Optional.of(languages[best]) : Optional.empty();
+    }
+
+    /**
+     * Parcourt les trigrammes du texte en minuscules (ponctuation remplacée par des espaces, espaces fusionnés)
+     * et retourne leur nombre
+     */
+    private static int forEachTrigram(String text, IntConsumer sink) {
+        char previous2 = ' ';
+        char previous1 = ' ';
+        int count = 0;
+
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? Character.toLowerCase(text.charAt(i)) : ' ';
+            if (!Character.isLetter(c)) {
+                c = ' ';
+            }
+            if (c == ' ' && previous1 == ' ') {
+                continue;
+            }
+
+            int hash = ((previous2 * 31 + previous1) * 31 + c) * 0x9E3779B1;
+            sink.accept((hash ^ (hash >>> 16)) & (BUCKETS - 1));
+            count++;
+
+            previous2 = previous1;
+            previous1 = c;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,131 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.dto.WebhookRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Règles de journalisation des messages : échantillonnage des logs par message et masquage des données personnelles
+ *
+ * Usage sur le chemin critique, tout calcul restant derrière la garde :
+ *   if (log.isInfoEnabled() && messageLog.sample()) log.info("... user={}", messageLog.phone(userId));
+ * Les numéros sont pseudonymisés (HMAC-SHA256 tronqué) si une clé est configurée, sinon masqués
+ * sauf les 4 derniers chiffres ; les textes sont tronqués et mis sur une seule ligne
+ */
+@Service
+public class MessageLogPolicy {
+
+    private static final int VISIBLE_DIGITS = 4;
+    private static final int HASH_BYTES = 6;
+
+    private final double sampleRate;
+    private final int maxTextLength;
+    private final ThreadLocal<Mac> hmac;
+
+    public MessageLogPolicy(@Value("${logging.messages.sample-rate:1.0}") double sampleRate,
+                            @Value("${logging.messages.max-text-length:64}") int maxTextLength,
+                            @Value("${logging.messages.phone-hash-key:}") String phoneHashKey) {
+        this.sampleRate = sampleRate;
+        this.maxTextLength = maxTextLength;
+        this.hmac = phoneHashKey == null || phoneHashKey.isBlank() ? null : ThreadLocal.withInitial(() -> newMac(phoneHashKey));
+    }
+
+    /**
+     * Vrai si ce message doit produire ses logs détaillés (les erreurs ne sont jamais échantillonnées)
+     */
+    public boolean sample() {
+        return sampleRate >= 1.0 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Numéro de téléphone publiable dans les logs
+     */
+    public String phone(String number) {
+        if (number == null || number.isEmpty()) {
+            return "-";
+        }
+        if (hmac != null) {
+            byte[] digest = hmac.get().doFinal(number.getBytes(StandardCharsets.UTF_8));
+            return "u:" + HexFormat.of().formatHex(digest, 0, HASH_BYTES);
+        }
+
+        // Identifiants courts : on en montre au plus un tiers
+        int visible = Math.min(VISIBLE_DIGITS, number.length() / 3);
+        char[] masked = number.toCharArray();
+        for (int i = 0; i < masked.length - visible; i++) {
+            masked[i] = '*';
+        }
+        return new String(masked);
+    }
+
+    /**
+     * Texte tronqué, sur une ligne (pas d'injection de fausses lignes de log)
+     */
+    public String text(String text) {
+        if (text == null) {
+            return "-";
+        }
+
+        int length = Math.min(text.length(), maxTextLength);
+        if (length < text.length() && length > 0 && Character.isHighSurrogate(text.charAt(length - 1))) {
+            length--; // Ne pas couper un emoji en deux
+        }
+        StringBuilder builder = new StringBuilder(length + 16);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            builder.append(c == '\n' || c == '\r' ? ' ' : c);
+        }
+        if (text.length() > maxTextLength) {
+            builder.append("…(").append(text.length()).append(" chars)");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Résumé d'un webhook sans son contenu (pas de toString() des DTO)
+     */
+    public String summary(WebhookRequest request) {
+        int entries = 0;
+        int messages = 0;
+        String phoneNumberId = null;
+
+        if (request.getEntry() != null) {
+            for (WebhookRequest.Entry entry : request.getEntry()) {
+                entries++;
+                if (entry.getChanges() == null) {
+                    continue;
+                }
+                for (WebhookRequest.Change change : entry.getChanges()) {
+                    WebhookRequest.Value value = change.getValue();
+                    if (value == null) {
+                        continue;
+                    }
+                    if (value.getMetadata() != null && phoneNumberId == null) {
+                        phoneNumberId = value.getMetadata().getPhoneNumberId();
+                    }
+                    if (value.getMessages() != null) {
+                        messages += value.getMessages().size();
+                    }
+                }
+            }
+        }
+        return "entries=" + entries + " messages=" + messages + " phoneNumberId=" + (phoneNumberId != null ? phoneNumberId : "-");
+    }
+
+    private static Mac newMac(String key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.st.chatbot_whatsapp.service;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Budget d'envoi d'un tenant : nombre d'appels simultanés, file d'attente bornée et débit maximal
+ * Aucun thread n'est bloqué : les appels en attente démarrent quand un appel en cours se termine,
+ * au prochain créneau de débit libre
+ */
+final class OutboundBudget {
+
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final long intervalNanos;
+
+    // Protégés par this
+    private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+    private int inFlight;
+    private long nextSlotNanos;
+
+    private final LongAdder rejected = new LongAdder();
+
+    OutboundBudget(int maxInFlight, int maxQueued, double ratePerSecond) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.intervalNanos = ratePerSecond > 0 ? (long) (1_000_000_000L / ratePerSecond) : 0;
+    }
+
+    /**
+     * Exécute l'appel dans le budget ; échoue immédiatement (RejectedExecutionException) si la file est pleine
+     */
+    <T> Mono<T> run(Mono<T> call) {
+        return Mono.create(sink -> {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            AtomicReference<Disposable> running = new AtomicReference<>();
+
+            Runnable start = () -> {
+                if (cancelled.get()) {
+                    release();
+                    return;
+                }
+                long waitNanos = reserveSlot();
+                Mono<T> paced = waitNanos > 0 ? Mono.delay(Duration.ofNanos(waitNanos)).then(call) : call;
+                running.set(paced
+                        .doFinally(signal -> release())
+                        .subscribe(sink::success, sink::error, sink::success));
+            };
+
+            sink.onCancel(() -> {
+                if (cancelled.compareAndSet(false, true)) {
+                    Disposable disposable = running.get();
+                    if (disposable != null) {
+                        disposable.dispose();
+                    } else {
+                        dequeue(start);
+                    }
+                }
+            });
+
+            if (!acquireOrEnqueue(start)) {
+                rejected.increment();
+                sink.error(new RejectedExecutionException("Outbound budget exhausted"));
+            }
+        });
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getQueued() {
+        return waiting.size();
+    }
+
+    long getRejected() {
+        return rejected.sum();
+    }
+
+    private boolean acquireOrEnqueue(Runnable start) {
+        synchronized (this) {
+            if (inFlight >= maxInFlight) {
+                if (waiting.size() >= maxQueued) {
+                    return false;
+                }
+                waiting.add(start);
+                return true;
+            }
+            inFlight++;
+        }
+        start.run();
+        return true;
+    }
+
+    /**
+     * Libère la place de l'appel terminé, ou la transmet directement au premier appel en attente
+     */
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                inFlight--;
+            }
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    private synchronized void dequeue(Runnable start) {
+        waiting.remove(start);
+    }
+
+    private synchronized long reserveSlot() {
+        if (intervalNanos == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long slot = Math.max(now, nextSlotNanos);
+        nextSlotNanos = slot + intervalNanos;
+        return slot - now;
+    }
+}
@@ -0,0 +1,70 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.st.chatbot_whatsapp.dto.WeatherResponse;
+import com.st.chatbot_whatsapp.model.Language;
+import com.st.chatbot_whatsapp.model.RenderedReply;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cache des réponses météo déjà rendues : pour une ville, une observation, un tenant et une langue, le texte est
+ * identique pour tous les utilisateurs, il n'est donc formaté (et échappé en JSON) qu'une fois
+ * Une entrée par (ville, tenant, langue) : elle est remplacée dès que l'observation (dt) ou les modèles changent
+ */
+@Service
+@Slf4j
+public class RenderedReplyCache {
+
+    private final WeatherService weatherService;
+    private final Cache<ReplyKey, Entry> replies;
+
+    public RenderedReplyCache(WeatherService weatherService,
+                              @Value("${weather.reply-cache.max-size:2000}") long maxSize) {
+        this.weatherService = weatherService;
+        this.replies = Caffeine.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * Réponse rendue pour cette observation ; un simple accès au cache pour les villes déjà servies
+     * Les ressources de langue sont immuables : un rechargement de configuration en publie de nouvelles,
+     * ce qui suffit à invalider les entrées rendues avec les anciennes
+     */
+    public RenderedReply render(WeatherResponse weather, String tenantId, LanguageBundle bundle) {
+        if (weather == null || weather.getId() == null || weather.getDt() == null) {
+            return encode(weatherService.formatWeatherResponse(weather, bundle), 0);
+        }
+
+        ReplyKey key = new ReplyKey(weather.getId(), tenantId, bundle.getLanguage());
+        Entry cached = replies.getIfPresent(key);
+        if (cached != null && cached.bundle() == bundle && cached.reply().getObservedAt() == weather.getDt()) {
+            return cached.reply();
+        }
+
+        RenderedReply fresh = encode(weatherService.formatWeatherResponse(weather, bundle), weather.getDt());
+        replies.put(key, new Entry(bundle, fresh));
+        log.debug("Rendered reply refreshed for city {} ({}, {}) at {}", weather.getId(), tenantId,
+                bundle.getLanguage().getCode(), weather.getDt());
+        return fresh;
+    }
+
+    /**
+     * Réponse non mise en cache (ex : ville introuvable), encodée pour passer par le même chemin d'envoi
+     */
+    public static RenderedReply plain(String text) {
+        return encode(text, 0);
+    }
+
+    private static RenderedReply encode(String text, long observedAt) {
+        return new RenderedReply(text, JsonStringEncoder.getInstance().quoteAsUTF8(text), observedAt);
+    }
+
+    private record ReplyKey(long cityId, String tenantId, Language language) {
+    }
+
+    private record Entry(LanguageBundle bundle, RenderedReply reply) {
+    }
+}
@@ -0,0 +1,200 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.model.ShutdownReport;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Arrêt progressif du bot lors d'un redéploiement :
+ * 1. les nouveaux webhooks sont refusés (503, Meta les renverra à la nouvelle instance)
+ * 2. les messages en cours et les appels sortants (météo, réponses) sont attendus jusqu'à l'échéance
+ * 3. les écritures d'analytics sont vidées sur disque
+ * 4. le bilan de ce qui a été abandonné est journalisé
+ *
+ * Phase par défaut : arrêté avant le serveur web (qui continue donc de répondre 503) et avant
+ * les ressources Reactor Netty (phase 0) dont dépendent les appels sortants
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ShutdownCoordinator implements SmartLifecycle {
+
+    private static final long POLL_MILLIS = 20;
+
+    @Value("${whatsapp.shutdown.drain-timeout-ms:20000}")
+    private long drainTimeoutMs;
+
+    private final AnalyticsService analyticsService;
+
+    private volatile boolean running;
+    private volatile boolean draining;
+    private volatile boolean aborted;
+
+    private final AtomicInteger inboundInFlight = new AtomicInteger();
+    private final Map<Long, Work> outboundInFlight = new ConcurrentHashMap<>();
+    private final AtomicLong workIds = new AtomicLong();
+    private final LongAdder rejectedWebhooks = new LongAdder();
+    private final LongAdder completedWhileDraining = new LongAdder();
+
+    // Émis à l'échéance : annule tous les appels sortants encore en attente
+    private final Sinks.One<Boolean> abort = Sinks.one();
+
+    private ShutdownReport report;
+
+    public enum Work {
+        WEATHER_LOOKUP, // Appel OpenWeatherMap suivi de la réponse météo
+        REPLY           // Envoi d'une réponse à l'API WhatsApp
+    }
+
+    /**
+     * Admission des messages d'un webhook ; faux dès que l'arrêt a commencé
+     * L'incrément précède la lecture du drapeau : le drainage ne peut pas manquer un message admis
+     */
+    public boolean tryEnterInbound(int messages) {
+        inboundInFlight.addAndGet(messages);
+        if (draining) {
+            inboundInFlight.addAndGet(-messages);
+            rejectedWebhooks.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public void exitInbound() {
+        inboundInFlight.decrementAndGet();
+        if (draining) {
+            completedWhileDraining.increment();
+        }
+    }
+
+    /**
+     * Messages admis mais finalement refusés avant traitement (un tenant du webhook est saturé)
+     */
+    public void abandonInbound(int messages) {
+        inboundInFlight.addAndGet(-messages);
+    }
+
+    public boolean isAccepting() {
+        return !draining;
+    }
+
+    /**
+     * Suit un appel sortant jusqu'à sa fin ; il est annulé s'il n'est pas terminé à l'échéance du drainage
+     */
+    public <T> Mono<T> track(Work kind, Mono<T> work) {
+        return Mono.defer(() -> {
+            if (aborted) {
+                log.warn("{} refused: shutdown deadline already reached", kind);
+                return Mono.empty();
+            }
+
+            long id = workIds.incrementAndGet();
+            outboundInFlight.put(id, kind);
+            return work.takeUntilOther(abort.asMono())
+                    .doFinally(signal -> {
+                        // L'entrée est à celui qui la retire : ce traitement ou le bilan de l'échéance
+                        if (outboundInFlight.remove(id) != null && draining) {
+                            completedWhileDraining.increment();
+                        }
+                    });
+        });
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        drain();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Exécute la séquence d'arrêt une seule fois et retourne son bilan
+     */
+    public synchronized ShutdownReport drain() {
+        if (report != null) {
+            return report;
+        }
+
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        draining = true;
+        log.info("Shutdown started: refusing webhooks, draining {} messages and {} outbound calls (deadline {} ms)",
+                inboundInFlight.get(), outboundInFlight.size(), drainTimeoutMs);
+
+        // Les contextes sont mis à jour de façon synchrone par le traitement entrant : l'attendre suffit
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMs);
+        try {
+            while ((inboundInFlight.get() > 0 || !outboundInFlight.isEmpty()) && System.nanoTime() < deadline) {
+                Thread.sleep(POLL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long droppedMessages = inboundInFlight.get();
+        long droppedWeatherLookups = 0;
+        long droppedReplies = 0;
+        aborted = true;
+        for (Long id : outboundInFlight.keySet()) {
+            Work work = outboundInFlight.remove(id);
+            if (work == Work.WEATHER_LOOKUP) {
+                droppedWeatherLookups++;
+            } else if (work == Work.REPLY) {
+                droppedReplies++;
+            }
+        }
+        abort.tryEmitValue(true);
+        long drainMillis = (System.nanoTime() - start) / 1_000_000;
+
+        try {
+            analyticsService.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        report = ShutdownReport.builder()
+                .startedAt(startedAt)
+                .drainMillis(drainMillis)
+                .deadlineReached(droppedMessages + droppedWeatherLookups + droppedReplies > 0)
+                .rejectedWebhooks(rejectedWebhooks.sum())
+                .completedWork(completedWhileDraining.sum())
+                .droppedMessages(droppedMessages)
+                .droppedWeatherLookups(droppedWeatherLookups)
+                .droppedReplies(droppedReplies)
+                .droppedAnalyticsEvents(analyticsService.getDroppedEvents())
+                .build();
+
+        if (report.getTotalDropped() > 0) {
+            log.warn("Shutdown deadline reached after {} ms, work dropped: {}", drainMillis, report);
+        } else {
+            log.info("Shutdown drained in {} ms: {}", drainMillis, report);
+        }
+        return report;
+    }
+
+    public synchronized ShutdownReport getReport() {
+        return report;
+    }
+}
@@ -0,0 +1,283 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.dto.TenantStatus;
+import com.st.chatbot_whatsapp.model.Language;
+import com.st.chatbot_whatsapp.model.Tenant;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registre des numéros servis par l'instance, routés sur le phone_number_id des webhooks
+ *
+ * Sans fichier whatsapp.tenants.file, un tenant unique "default" est construit depuis whatsapp.phone.number.id
+ * et whatsapp.access.token. Le fichier (format properties) décrit un tenant par préfixe :
+ *   tenants.boutique.phone-number-id=1234
+ *   tenants.boutique.access-token=${BOUTIQUE_ACCESS_TOKEN}
+ *   tenants.boutique.max-workers=4
+ *   tenants.boutique.template.fr.reply.GREETING=Bienvenue chez Boutique %s !
+ *   default=boutique
+ * Le rechargement construit un nouveau registre complet puis l'échange ; en cas d'erreur l'actuel reste actif
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TenantRegistry {
+
+    static final String DEFAULT_TENANT_ID = "default";
+
+    private static final String TENANT_PREFIX = "tenants.";
+    private static final String TEMPLATE_PREFIX = "template.";
+    private static final String DEFAULT_KEY = "default";
+
+    @Value("${whatsapp.tenants.file:}")
+    private String tenantsFile;
+
+    @Value("${whatsapp.api.url}")
+    private String whatsappApiUrl;
+
+    @Value("${whatsapp.phone.number.id:}")
+    private String phoneNumberId;
+
+    @Value("${whatsapp.access.token:}")
+    private String accessToken;
+
+    @Value("${whatsapp.tenants.defaults.max-workers:4}")
+    private int defaultMaxWorkers;
+
+    @Value("${whatsapp.tenants.defaults.max-queued-messages:200}")
+    private int defaultMaxQueuedMessages;
+
+    @Value("${whatsapp.tenants.defaults.max-in-flight-sends:8}")
+    private int defaultMaxInFlightSends;
+
+    @Value("${whatsapp.tenants.defaults.max-queued-sends:500}")
+    private int defaultMaxQueuedSends;
+
+    @Value("${whatsapp.tenants.defaults.rate-per-second:20}")
+    private double defaultRatePerSecond;
+
+    private final WebClient.Builder webClientBuilder;
+    private final LanguageBundleService bundles;
+    private final Environment environment;
+
+    private final AtomicReference<Registry> current = new AtomicReference<>();
+
+    private volatile String lastError;
+    private volatile Instant lastErrorAt;
+
+    @PostConstruct
+    public void load() throws IOException {
+        // Une configuration invalide bloque le démarrage
+        Registry registry = build(1);
+        current.set(registry);
+        log.info("Tenant registry loaded: {} tenants (default: {})", registry.byId().size(), registry.defaultTenant().getId());
+    }
+
+    @PreDestroy
+    public void stop() {
+        Registry registry = current.get();
+        if (registry != null) {
+            registry.byId().values().forEach(TenantRuntime::shutdown);
+        }
+    }
+
+    /**
+     * Relit la configuration et publie le nouveau registre ; les messages déjà acceptés terminent sur l'ancien
+     */
+    public synchronized boolean reload() {
+        Registry previous = current.get();
+        Registry next;
+        try {
+            next = build(previous.version() + 1);
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            lastError = e.getMessage();
+            lastErrorAt = Instant.now();
+            log.error("Tenant registry reload rejected, keeping version {}: {}", previous.version(), e.getMessage());
+            return false;
+        }
+
+        current.set(next);
+        previous.byId().values().forEach(TenantRuntime::shutdown);
+        lastError = null;
+        log.info("Tenant registry version {} published: {} tenants", next.version(), next.byId().size());
+        return true;
+    }
+
+    public Optional<TenantRuntime> findByPhoneNumberId(String phoneNumberId) {
+        return Optional.ofNullable(current.get().byPhoneNumberId().get(phoneNumberId));
+    }
+
+    public Optional<TenantRuntime> get(String id) {
+        return Optional.ofNullable(current.get().byId().get(id));
+    }
+
+    /**
+     * Tenant des webhooks sans métadonnées et des diffusions sans tenant explicite
+     */
+    public TenantRuntime getDefault() {
+        return current.get().defaultTenant();
+    }
+
+    public long getVersion() {
+        return current.get().version();
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public Instant getLastErrorAt() {
+        return lastErrorAt;
+    }
+
+    public List<TenantStatus> getStatus() {
+        Registry registry = current.get();
+        return registry.byId().values().stream()
+                .map(runtime -> runtime.toStatus(runtime == registry.defaultTenant()))
+                .toList();
+    }
+
+    private Registry build(long version) throws IOException {
+        List<Tenant> tenants = new ArrayList<>();
+        String defaultId;
+
+        if (tenantsFile == null || tenantsFile.isBlank()) {
+            tenants.add(Tenant.builder()
+                    .id(DEFAULT_TENANT_ID)
+                    .phoneNumberId(phoneNumberId)
+                    .accessToken(accessToken)
+                    .maxWorkers(defaultMaxWorkers)
+                    .maxQueuedMessages(defaultMaxQueuedMessages)
+                    .maxInFlightSends(defaultMaxInFlightSends)
+                    .maxQueuedSends(defaultMaxQueuedSends)
+                    .ratePerSecond(defaultRatePerSecond)
+                    .templates(Map.of())
+                    .build());
+            defaultId = DEFAULT_TENANT_ID;
+        } else {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(Paths.get(tenantsFile), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            tenants.addAll(parse(properties));
+            defaultId = properties.getProperty(DEFAULT_KEY, tenants.isEmpty() ? null : tenants.get(0).getId());
+        }
+
+        Set<String> phoneNumberIds = new HashSet<>();
+        for (Tenant tenant : tenants) {
+            validate(tenant);
+            if (!phoneNumberIds.add(tenant.getPhoneNumberId())) {
+                throw new IllegalArgumentException("Phone number id " + tenant.getPhoneNumberId() + " is declared twice");
+            }
+        }
+        if (tenants.stream().noneMatch(tenant -> tenant.getId().equals(defaultId))) {
+            throw new IllegalArgumentException("Default tenant " + defaultId + " is not declared");
+        }
+
+        Map<String, TenantRuntime> byId = new LinkedHashMap<>();
+        Map<String, TenantRuntime> byPhoneNumberId = new HashMap<>();
+        for (Tenant tenant : tenants) {
+            // clone() : le builder est partagé, chaque tenant a son propre client authentifié
+            WebClient client = webClientBuilder.clone()
+                    .baseUrl(whatsappApiUrl)
+                    .defaultHeader("Authorization", "Bearer " + tenant.getAccessToken())
+                    .build();
+            TenantRuntime runtime = new TenantRuntime(tenant, client);
+            byId.put(tenant.getId(), runtime);
+            byPhoneNumberId.put(tenant.getPhoneNumberId(), runtime);
+        }
+
+        return new Registry(version, Collections.unmodifiableMap(byId), Map.copyOf(byPhoneNumberId), byId.get(defaultId));
+    }
+
+    /**
+     * Un tenant par préfixe "tenants.<id>." ; les valeurs peuvent référencer l'environnement (${VARIABLE})
+     */
+    private List<Tenant> parse(Properties properties) {
+        Map<String, Map<String, String>> settingsById = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(TENANT_PREFIX)) {
+                continue;
+            }
+            int separator = key.indexOf('.', TENANT_PREFIX.length());
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid tenant property " + key);
+            }
+            String id = key.substring(TENANT_PREFIX.length(), separator);
+            settingsById.computeIfAbsent(id, k -> new HashMap<>())
+                    .put(key.substring(separator + 1), environment.resolveRequiredPlaceholders(properties.getProperty(key)));
+        }
+
+        List<Tenant> tenants = new ArrayList<>();
+        settingsById.forEach((id, settings) -> {
+            Map<Language, Map<String, String>> templates = new EnumMap<>(Language.class);
+            settings.forEach((key, value) -> {
+                if (key.startsWith(TEMPLATE_PREFIX)) {
+                    String template = key.substring(TEMPLATE_PREFIX.length());
+                    int dot = template.indexOf('.');
+                    if (dot < 0) {
+                        throw new IllegalArgumentException("Invalid template property for tenant " + id + ": " + key);
+                    }
+                    templates.computeIfAbsent(Language.fromCode(template.substring(0, dot)), l -> new HashMap<>())
+                            .put(template.substring(dot + 1), value);
+                }
+            });
+
+            tenants.add(Tenant.builder()
+                    .id(id)
+                    .phoneNumberId(settings.get("phone-number-id"))
+                    .accessToken(settings.get("access-token"))
+                    .maxWorkers(intSetting(settings, "max-workers", defaultMaxWorkers))
+                    .maxQueuedMessages(intSetting(settings, "max-queued-messages", defaultMaxQueuedMessages))
+                    .maxInFlightSends(intSetting(settings, "max-in-flight-sends", defaultMaxInFlightSends))
+                    .maxQueuedSends(intSetting(settings, "max-queued-sends", defaultMaxQueuedSends))
+                    .ratePerSecond(settings.containsKey("rate-per-second")
+                            ? Double.parseDouble(settings.get("rate-per-second")) : defaultRatePerSecond)
+                    .templates(templates)
+                    .build());
+        });
+        return tenants;
+    }
+
+    /**
+     * Identifiants présents et modèles compatibles avec ceux de la configuration actuelle
+     */
+    private void validate(Tenant tenant) {
+        if (tenant.getPhoneNumberId() == null || tenant.getPhoneNumberId().isBlank()) {
+            throw new IllegalArgumentException("Missing phone-number-id for tenant " + tenant.getId());
+        }
+        if (tenant.getAccessToken() == null || tenant.getAccessToken().isBlank()) {
+            throw new IllegalArgumentException("Missing access-token for tenant " + tenant.getId());
+        }
+        tenant.getTemplates().forEach((language, overrides) -> {
+            try {
+                bundles.get(language).withTemplates(overrides);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Tenant " + tenant.getId() + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private static int intSetting(Map<String, String> settings, String key, int defaultValue) {
+        return settings.containsKey(key) ? Integer.parseInt(settings.get(key)) : defaultValue;
+    }
+
+    private record Registry(long version, Map<String, TenantRuntime> byId,
+                            Map<String, TenantRuntime> byPhoneNumberId, TenantRuntime defaultTenant) {
+    }
+}
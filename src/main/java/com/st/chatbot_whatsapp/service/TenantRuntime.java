@@ -0,0 +1,192 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.dto.TenantStatus;
+import com.st.chatbot_whatsapp.model.Language;
+import com.st.chatbot_whatsapp.model.Tenant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Ressources d'exécution d'un tenant : client HTTP authentifié, workers et budget d'envoi qui lui sont propres
+ * Un numéro saturé remplit sa propre file et voit ses messages refusés, sans ralentir les autres
+ *
+ * La capacité (workers + file) est réservée avant la soumission, pour tous les messages d'un webhook à la fois :
+ * la file des workers n'a donc jamais à refuser une tâche
+ */
+@Slf4j
+public final class TenantRuntime {
+
+    private static final long IDLE_WORKER_SECONDS = 60;
+
+    private final Tenant tenant;
+    private final WebClient client;
+    private final ThreadPoolExecutor workers;
+    private final OutboundBudget outbound;
+    private final int capacity;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final LongAdder rejectedMessages = new LongAdder();
+
+    // Fin de la réponse du dernier message accepté de chaque utilisateur (retirée une fois atteinte)
+    private final Map<String, CompletableFuture<Void>> pendingByUser = new ConcurrentHashMap<>();
+
+    // Ressources de langue avec les modèles du tenant, recalculées quand la configuration de base change
+    private final Map<Language, CachedBundle> bundles = new ConcurrentHashMap<>();
+
+    TenantRuntime(Tenant tenant, WebClient client) {
+        this.tenant = tenant;
+        this.client = client;
+        this.outbound = new OutboundBudget(tenant.getMaxInFlightSends(), tenant.getMaxQueuedSends(), tenant.getRatePerSecond());
+
+        AtomicInteger threads = new AtomicInteger();
+        int size = Math.max(1, tenant.getMaxWorkers());
+        this.capacity = size + Math.max(0, tenant.getMaxQueuedMessages());
+        // File non bornée par elle-même : sa taille est limitée par les réservations (tryAdmit)
+        this.workers = new ThreadPoolExecutor(size, size, IDLE_WORKER_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "tenant-" + tenant.getId() + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Les tenants inactifs ne gardent aucun thread
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    public Tenant getTenant() {
+        return tenant;
+    }
+
+    public String getId() {
+        return tenant.getId();
+    }
+
+    WebClient client() {
+        return client;
+    }
+
+    /**
+     * Réserve la place de plusieurs messages, tout ou rien ; faux si les workers et la file du tenant sont pleins
+     */
+    boolean tryAdmit(int messages) {
+        while (true) {
+            int current = admitted.get();
+            if (current + messages > capacity) {
+                rejectedMessages.add(messages);
+                return false;
+            }
+            if (admitted.compareAndSet(current, current + messages)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Rend des places réservées mais non utilisées
+     */
+    void release(int messages) {
+        admitted.addAndGet(-messages);
+    }
+
+    /**
+     * Exécute un message dont la place a été réservée ; la place est rendue à la fin du traitement
+     * Les messages d'un même utilisateur passent l'un après l'autre : chacun attend que la réponse du précédent
+     * soit envoyée (ou abandonnée), ce qui garde l'ordre des réponses et un seul traitement par contexte
+     */
+    void execute(String userId, Supplier<? extends CompletionStage<?>> task) {
+        CompletableFuture<Void> replied = new CompletableFuture<>();
+        CompletableFuture<Void> previous = pendingByUser.put(userId, replied);
+        replied.whenComplete((result, error) -> pendingByUser.remove(userId, replied));
+
+        Runnable run = () -> {
+            CompletionStage<?> reply = null;
+            try {
+                reply = task.get();
+            } finally {
+                release(1);
+                if (reply == null) {
+                    replied.complete(null);
+                } else {
+                    reply.whenComplete((result, error) -> replied.complete(null));
+                }
+            }
+        };
+        if (previous == null) {
+            submit(run);
+        } else {
+            previous.whenComplete((result, error) -> submit(run));
+        }
+    }
+
+    /**
+     * Si le tenant vient d'être remplacé par un rechargement (workers arrêtés), le message est traité sur place
+     */
+    private void submit(Runnable task) {
+        try {
+            workers.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * Appel sortant soumis au budget du tenant (appels simultanés, file bornée, débit)
+     */
+    <T> Mono<T> withOutboundBudget(Mono<T> call) {
+        return outbound.run(call);
+    }
+
+    /**
+     * Ressources de langue avec les modèles surchargés par le tenant ; la version de base en cas d'erreur
+     */
+    public LanguageBundle bundle(LanguageBundle base) {
+        Map<String, String> overrides = tenant.getTemplates().get(base.getLanguage());
+        if (overrides == null || overrides.isEmpty()) {
+            return base;
+        }
+
+        CachedBundle cached = bundles.get(base.getLanguage());
+        if (cached != null && cached.base() == base) {
+            return cached.bundle();
+        }
+
+        LanguageBundle bundle;
+        try {
+            bundle = base.withTemplates(overrides);
+        } catch (IllegalArgumentException e) {
+            log.error("Templates of tenant {} rejected for {}, using defaults: {}", tenant.getId(), base.getLanguage().getCode(), e.getMessage());
+            bundle = base;
+        }
+        bundles.put(base.getLanguage(), new CachedBundle(base, bundle));
+        return bundle;
+    }
+
+    TenantStatus toStatus(boolean defaultTenant) {
+        return TenantStatus.builder()
+                .id(tenant.getId())
+                .phoneNumberId(tenant.getPhoneNumberId())
+                .defaultTenant(defaultTenant)
+                .activeWorkers(workers.getActiveCount())
+                .queuedMessages(workers.getQueue().size())
+                .rejectedMessages(rejectedMessages.sum())
+                .inFlightSends(outbound.getInFlight())
+                .queuedSends(outbound.getQueued())
+                .rejectedSends(outbound.getRejected())
+                .templateOverrides(tenant.getTemplates().values().stream().mapToInt(Map::size).sum())
+                .build();
+    }
+
+    /**
+     * Arrêt progressif : les messages déjà acceptés sont traités, les nouveaux refusés
+     */
+    void shutdown() {
+        workers.shutdown();
+    }
+
+    private record CachedBundle(LanguageBundle base, LanguageBundle bundle) {
+    }
+}
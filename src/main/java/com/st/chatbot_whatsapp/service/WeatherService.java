@@ -1,12 +1,16 @@
 package com.st.chatbot_whatsapp.service;
 
 import com.st.chatbot_whatsapp.dto.WeatherResponse;
+import com.st.chatbot_whatsapp.model.Language;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
 @Service
@@ -21,56 +25,70 @@ public class WeatherService {
     private String apiUrl;
 
     private final WebClient.Builder webClientBuilder;
+    private final CacheManager cacheManager;
+    private final MessageLogPolicy messageLog;
 
     /**
-     * Récupère la météo pour une ville (avec cache de 10 minutes)
+     * Récupère la météo pour une ville dans une langue (avec cache, clé ville + langue)
      */
-    @Cacheable(value = "weather", key = "#city.toLowerCase()")
-    public Mono<WeatherResponse> getWeather(String city) {
-        log.info("Fetching weather for city: {}", city);
+    @Cacheable(value = "weather", key = "#city.toLowerCase() + ':' + #language.code")
+    public Mono<WeatherResponse> getWeather(String city, Language language) {
+        // La ville peut être le message brut (repli sur les messages courts) : même règles que les messages
+        if (log.isDebugEnabled() && messageLog.sample()) {
+            log.debug("Fetching weather for city=\"{}\" lang={}", messageLog.text(city), language.getCode());
+        }
 
-        WebClient webClient = webClientBuilder.baseUrl(apiUrl).build();
+        WebClient webClient = webClientBuilder.clone().baseUrl(apiUrl).build();
 
         return webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .queryParam("q", city)
                         .queryParam("appid", apiKey)
                         .queryParam("units", "metric")
-                        .queryParam("lang", "fr")
+                        .queryParam("lang", language.getCode())
                         .build())
                 .retrieve()
                 .bodyToMono(WeatherResponse.class)
-                .doOnSuccess(response -> log.info("Weather data retrieved for {}", city))
-                .doOnError(error -> log.error("Error fetching weather for {}: {}", city, error.getMessage()))
+                .doOnSuccess(response -> {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Weather data retrieved for city=\"{}\"", messageLog.text(city));
+                    }
+                })
                 .onErrorResume(error -> {
-                    log.error("Failed to fetch weather", error);
+                    log.error("Failed to fetch weather: {}", describe(error));
                     return Mono.empty();
                 });
     }
 
     /**
-     * Formate la réponse météo avec des emojis et informations détaillées
+     * Statut HTTP ou type de l'erreur : jamais le message ni la trace, qui contiennent l'URI et donc la clé d'API
+     */
+    private static String describe(Throwable error) {
+        if (error instanceof WebClientResponseException responseException) {
+            return "status=" + responseException.getStatusCode().value();
+        }
+        return "error=" + error.getClass().getSimpleName();
+    }
+
+    /**
+     * Indique si la météo de la ville est déjà en cache (même clé que getWeather)
+     */
+    public boolean isCached(String city, Language language) {
+        Cache cache = cacheManager.getCache("weather");
+        return cache != null && cache.get(city.toLowerCase() + ":" + language.getCode()) != null;
+    }
+
+    /**
+     * Formate la réponse météo avec des emojis et informations détaillées, selon les modèles de la langue (et du tenant)
      */
-    public String formatWeatherResponse(WeatherResponse weather) {
+    public String formatWeatherResponse(WeatherResponse weather, LanguageBundle bundle) {
         if (weather == null) {
-            return "❌ Désolé, je n'ai pas pu récupérer les informations météo pour cette ville. Vérifie l'orthographe !";
+            return bundle.template("weather.unavailable");
         }
 
         String emoji = getWeatherEmoji(weather.getWeather().get(0).getMain());
 
-        return String.format("""
-            %s *Météo à %s, %s*
-            
-            🌡️ *Température :* %.1f°C
-            🤔 *Ressenti :* %.1f°C
-            📊 *Conditions :* %s
-            
-            💨 *Vent :* %.1f km/h
-            💧 *Humidité :* %d%%
-            🔽 *Pression :* %d hPa
-            
-            _Données en temps réel_ ⏰
-            """,
+        return bundle.format("weather.format",
                 emoji,
                 weather.getName(),
                 weather.getSys().getCountry(),
@@ -1,157 +1,319 @@
 package com.st.chatbot_whatsapp.service;
 
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.st.chatbot_whatsapp.dto.WebhookRequest;
+import com.st.chatbot_whatsapp.model.AnalyticsEvent;
 import com.st.chatbot_whatsapp.model.ConversationContext;
 import com.st.chatbot_whatsapp.model.Intent;
+import com.st.chatbot_whatsapp.model.IntentPrediction;
+import com.st.chatbot_whatsapp.model.Language;
+import com.st.chatbot_whatsapp.model.RenderedReply;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class WhatsAppService {
 
-    @Value("${whatsapp.api.url}")
-    private String whatsappApiUrl;
+    private static final JsonStringEncoder JSON_ENCODER = JsonStringEncoder.getInstance();
 
-    @Value("${whatsapp.access.token}")
-    private String accessToken;
-
-    @Value("${whatsapp.phone.number.id}")
-    private String phoneNumberId;
+    // Corps d'un message texte : {"messaging_product":"whatsapp","to":"…","type":"text","text":{"body":"…"}}
+    private static final byte[] PAYLOAD_PREFIX = "{\"messaging_product\":\"whatsapp\",\"to\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PAYLOAD_MIDDLE = "\",\"type\":\"text\",\"text\":{\"body\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PAYLOAD_SUFFIX = "\"}}".getBytes(StandardCharsets.UTF_8);
 
     private final IntentDetectorService intentDetector;
     private final WeatherService weatherService;
     private final ConversationContextService contextService;
-    private final WebClient.Builder webClientBuilder;
+    private final LanguageDetector languageDetector;
+    private final LanguageBundleService bundles;
+    private final RenderedReplyCache replyCache;
+    private final AnalyticsService analyticsService;
+    private final ShutdownCoordinator shutdownCoordinator;
+    private final MessageLogPolicy messageLog;
+    private final TenantRegistry tenantRegistry;
+
+    /**
+     * Répartit les messages entrants sur les workers de leur tenant (routage sur metadata.phone_number_id)
+     * Admission tout ou rien : si un message ne peut pas être accepté (arrêt en cours ou tenant saturé), aucun
+     * ne l'est et le webhook doit être refusé pour que Meta le renvoie, sans réponse en double
+     */
+    public boolean processIncomingMessage(WebhookRequest request) {
+        Map<TenantRuntime, List<WebhookRequest.Message>> messagesByTenant = routeMessages(request);
+        int count = messagesByTenant.values().stream().mapToInt(List::size).sum();
+        if (count == 0) {
+            return true;
+        }
+
+        if (!shutdownCoordinator.tryEnterInbound(count)) {
+            return false;
+        }
+
+        List<TenantRuntime> admitted = new ArrayList<>();
+        for (Map.Entry<TenantRuntime, List<WebhookRequest.Message>> entry : messagesByTenant.entrySet()) {
+            if (!entry.getKey().tryAdmit(entry.getValue().size())) {
+                admitted.forEach(tenant -> tenant.release(messagesByTenant.get(tenant).size()));
+                shutdownCoordinator.abandonInbound(count);
+                log.warn("Tenant {} saturated, webhook of {} messages refused", entry.getKey().getId(), count);
+                return false;
+            }
+            admitted.add(entry.getKey());
+        }
+
+        // Suivi par l'arrêt progressif jusqu'à la fin du traitement de chaque message ;
+        // ceux d'un même utilisateur sont traités dans l'ordre, réponse comprise
+        messagesByTenant.forEach((tenant, messages) -> messages.forEach(message -> tenant.execute(message.getFrom(), () -> {
+            try {
+                return handleMessage(tenant, message);
+            } catch (RuntimeException e) {
+                log.error("Error processing message for tenant {}", tenant.getId(), e);
+                return null;
+            } finally {
+                shutdownCoordinator.exitInbound();
+            }
+        })));
+        return true;
+    }
 
     /**
-     * Traite les messages entrants de manière asynchrone
+     * Messages texte du webhook groupés par tenant ; ceux d'un numéro inconnu sont ignorés
      */
-    @Async
-    public void processIncomingMessage(WebhookRequest request) {
-        if (request.getEntry() == null || request.getEntry().isEmpty()) {
-            return;
+    private Map<TenantRuntime, List<WebhookRequest.Message>> routeMessages(WebhookRequest request) {
+        Map<TenantRuntime, List<WebhookRequest.Message>> messagesByTenant = new LinkedHashMap<>();
+        if (request.getEntry() == null) {
+            return messagesByTenant;
         }
 
-        request.getEntry().forEach(entry ->
-                entry.getChanges().forEach(change -> {
-                    if (change.getValue().getMessages() != null) {
-                        change.getValue().getMessages().forEach(this::handleMessage);
+        for (WebhookRequest.Entry entry : request.getEntry()) {
+            if (entry.getChanges() == null) {
+                continue;
+            }
+            for (WebhookRequest.Change change : entry.getChanges()) {
+                WebhookRequest.Value value = change.getValue();
+                if (value == null || value.getMessages() == null) {
+                    continue;
+                }
+
+                Optional<TenantRuntime> tenant = resolveTenant(value.getMetadata());
+                if (tenant.isEmpty()) {
+                    log.warn("Webhook for unknown phone number id {}, ignored", value.getMetadata().getPhoneNumberId());
+                    continue;
+                }
+                for (WebhookRequest.Message message : value.getMessages()) {
+                    if ("text".equals(message.getType())) {
+                        messagesByTenant.computeIfAbsent(tenant.get(), t -> new ArrayList<>()).add(message);
                     }
-                })
-        );
+                }
+            }
+        }
+        return messagesByTenant;
+    }
+
+    /**
+     * Tenant du numéro destinataire ; le tenant par défaut pour les webhooks sans métadonnées
+     */
+    private Optional<TenantRuntime> resolveTenant(WebhookRequest.Metadata metadata) {
+        if (metadata == null || metadata.getPhoneNumberId() == null) {
+            return Optional.of(tenantRegistry.getDefault());
+        }
+        return tenantRegistry.findByPhoneNumberId(metadata.getPhoneNumberId());
     }
 
     /**
-     * Gère un message individuel
+     * Gère un message individuel ; retourne la fin de l'envoi de sa réponse
      */
-    private void handleMessage(WebhookRequest.Message message) {
+    private CompletableFuture<?> handleMessage(TenantRuntime tenant, WebhookRequest.Message message) {
         if (message.getType() == null || !message.getType().equals("text")) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         String userMessage = message.getText().getBody();
         String userId = message.getFrom();
 
-        log.info("Processing message from {}: {}", userId, userMessage);
+        // Logs détaillés échantillonnés une fois par message, numéro masqué et texte tronqué
+        boolean verbose = log.isInfoEnabled() && messageLog.sample();
+        if (verbose) {
+            log.info("Processing message user={} text=\"{}\"", messageLog.phone(userId), messageLog.text(userMessage));
+        }
+        long startNanos = System.nanoTime();
 
         // 1. Récupérer le contexte de l'utilisateur
-        ConversationContext context = contextService.getContext(userId);
+        ConversationContext context = contextService.getContext(tenant.getId(), userId);
 
-        // 2. Détecter l'intention
-        Intent intent = intentDetector.detectIntent(userMessage);
-        log.info("Detected intent: {} for user: {}", intent, userId);
+        // 2. Détecter la langue (sinon celle déjà connue de l'utilisateur) puis l'intention
+        Language language = languageDetector.detect(userMessage)
+                .orElse(context.getLanguage() != null ? context.getLanguage() : Language.DEFAULT);
+        LanguageBundle bundle = tenant.bundle(bundles.get(language));
+        IntentPrediction prediction = intentDetector.detectIntentWithConfidence(userMessage, language);
+        Intent intent = prediction.getIntent();
+        if (verbose) {
+            log.info("Detected intent={} source={} confidence={} lang={} tenant={} user={}", intent, prediction.getSource(),
+                    prediction.getConfidence(), language.getCode(), tenant.getId(), messageLog.phone(userId));
+        }
 
         // 3. Extraire la ville si c'est une demande météo
-        Optional<String> cityOpt = intentDetector.extractCity(userMessage);
+        Optional<String> cityOpt = intentDetector.extractCity(userMessage, language);
+        long detectMicros = elapsedMicros(startNanos);
 
         // 4. Générer et envoyer la réponse
+        CompletableFuture<?> replied;
         if (intent == Intent.WEATHER) {
-            handleWeatherIntent(userId, cityOpt, context);
+            replied = handleWeatherIntent(tenant, userId, cityOpt, context, language, bundle, startNanos, detectMicros, verbose);
         } else {
-            handleOtherIntent(userId, intent, context);
+            replied = handleOtherIntent(tenant, userId, intent, context, bundle);
+            recordEvent(intent, null, false, detectMicros, -1, startNanos);
         }
 
         // 5. Mettre à jour le contexte
-        contextService.updateContext(userId, userMessage, intent, cityOpt.orElse(null));
+        contextService.updateContext(tenant.getId(), userId, userMessage, intent, cityOpt.orElse(null), language);
+        return replied;
     }
 
     /**
      * Gère les demandes météo
      */
-    private void handleWeatherIntent(String userId, Optional<String> cityOpt, ConversationContext context) {
+    private CompletableFuture<?> handleWeatherIntent(TenantRuntime tenant, String userId, Optional<String> cityOpt, ConversationContext context,
+                                     Language language, LanguageBundle bundle, long startNanos, long detectMicros,
+                                     boolean verbose) {
         if (cityOpt.isPresent()) {
             String city = cityOpt.get();
-            log.info("Fetching weather for city: {}", city);
-
-            weatherService.getWeather(city)
-                    .subscribe(
-                            weatherResponse -> {
-                                String response = weatherService.formatWeatherResponse(weatherResponse);
-                                sendMessage(userId, response);
-                            },
-                            error -> {
-                                log.error("Error fetching weather", error);
-                                sendMessage(userId, "❌ Désolé, je n'ai pas trouvé cette ville. Vérifie l'orthographe ! 🤔");
-                            },
-                            () -> {
-                                // On error resume case (empty)
-                                sendMessage(userId, "❌ Désolé, je n'ai pas trouvé cette ville. Vérifie l'orthographe ! 🤔");
-                            }
-                    );
+            if (verbose) {
+                log.info("Fetching weather city=\"{}\"", messageLog.text(city));
+            }
+
+            boolean cacheHit = weatherService.isCached(city, language);
+            String cityNotFound = bundle.template("reply.city-not-found");
+            long weatherStartNanos = System.nanoTime();
+
+            // Un seul message par demande : le cas vide (ville introuvable) passe par switchIfEmpty,
+            // le callback de complétion étant aussi appelé après une valeur
+            Mono<RenderedReply> weatherReply = weatherService.getWeather(city, language)
+                    .map(weatherResponse -> {
+                        recordEvent(Intent.WEATHER, weatherResponse.getName(), cacheHit, detectMicros,
+                                elapsedMicros(weatherStartNanos), startNanos);
+                        return replyCache.render(weatherResponse, tenant.getId(), bundle);
+                    })
+                    .switchIfEmpty(Mono.fromSupplier(() -> {
+                        recordEvent(Intent.WEATHER, null, cacheHit, detectMicros,
+                                elapsedMicros(weatherStartNanos), startNanos);
+                        return RenderedReplyCache.plain(cityNotFound);
+                    }));
+
+            // Suivi jusqu'à l'envoi : un arrêt en cours attend la réponse au lieu de la perdre
+            return shutdownCoordinator.track(ShutdownCoordinator.Work.WEATHER_LOOKUP, weatherReply)
+                    .onErrorResume(error -> {
+                        log.error("Error fetching weather", error);
+                        return Mono.just(RenderedReplyCache.plain(cityNotFound));
+                    })
+                    .flatMap(reply -> Mono.fromFuture(sendRendered(tenant, userId, reply)))
+                    .toFuture();
         } else {
             // Pas de ville détectée - utiliser le contexte ou demander
-            String smartResponse = contextService.generateSmartResponse(context, Intent.WEATHER);
-            String response = smartResponse != null ? smartResponse : intentDetector.generateContextualResponse(Intent.WEATHER, null);
-            sendMessage(userId, response);
+            String smartResponse = contextService.generateSmartResponse(context, Intent.WEATHER, bundle);
+            String response = smartResponse != null ? smartResponse : intentDetector.generateContextualResponse(Intent.WEATHER, null, bundle);
+            recordEvent(Intent.WEATHER, null, false, detectMicros, -1, startNanos);
+            return sendMessage(tenant, userId, response);
         }
     }
 
     /**
      * Gère les autres intentions (salutations, aide, etc.)
      */
-    private void handleOtherIntent(String userId, Intent intent, ConversationContext context) {
-        String smartResponse = contextService.generateSmartResponse(context, intent);
-        String response = smartResponse != null ? smartResponse : intentDetector.generateContextualResponse(intent, null);
-        sendMessage(userId, response);
+    private CompletableFuture<?> handleOtherIntent(TenantRuntime tenant, String userId, Intent intent, ConversationContext context,
+                                                   LanguageBundle bundle) {
+        String smartResponse = contextService.generateSmartResponse(context, intent, bundle);
+        String response = smartResponse != null ? smartResponse : intentDetector.generateContextualResponse(intent, null, bundle);
+        return sendMessage(tenant, userId, response);
     }
 
     /**
-     * Envoie un message via l'API WhatsApp
+     * Publie l'événement d'analytics du message (sans bloquer)
      */
-    public void sendMessage(String to, String message) {
-        log.info("Sending message to {}: {}", to, message);
+    private void recordEvent(Intent intent, String city, boolean cacheHit, long detectMicros,
+                             long weatherMicros, long startNanos) {
+        analyticsService.record(new AnalyticsEvent(System.currentTimeMillis(), intent, city, cacheHit,
+                detectMicros, weatherMicros, elapsedMicros(startNanos)));
+    }
+
+    private static long elapsedMicros(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000;
+    }
+
+    /**
+     * Envoie un message via l'API WhatsApp, avec les identifiants et dans le budget d'envoi du tenant
+     * Le résultat se termine avec l'envoi (confirmé, en échec ou abandonné à l'arrêt)
+     */
+    public CompletableFuture<String> sendMessage(TenantRuntime tenant, String to, String message) {
+        if (log.isInfoEnabled() && messageLog.sample()) {
+            log.info("Sending message tenant={} to={} text=\"{}\"", tenant.getId(), messageLog.phone(to), messageLog.text(message));
+        }
+        return subscribeToSend(tenant, to, send(tenant, to, message));
+    }
+
+    /**
+     * Envoie une réponse déjà rendue : son corps JSON est réutilisé tel quel
+     */
+    public CompletableFuture<String> sendRendered(TenantRuntime tenant, String to, RenderedReply reply) {
+        if (log.isInfoEnabled() && messageLog.sample()) {
+            log.info("Sending message tenant={} to={} text=\"{}\"", tenant.getId(), messageLog.phone(to), messageLog.text(reply.getText()));
+        }
+        return subscribeToSend(tenant, to, sendEncoded(tenant, to, reply.getJsonEscapedUtf8()));
+    }
+
+    private CompletableFuture<String> subscribeToSend(TenantRuntime tenant, String to, Mono<String> send) {
+        // La réponse de l'API contient le numéro du destinataire : elle n'est pas journalisée
+        Mono<String> logged = send.doOnSuccess(response -> {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Message sent to={}", messageLog.phone(to));
+                    }
+                })
+                .doOnError(error -> log.error("Error sending message to={}", messageLog.phone(to), error));
+
+        // Suivi jusqu'à la confirmation de l'API : un arrêt en cours attend l'envoi au lieu de le perdre
+        // (attente d'un créneau du budget comprise)
+        return shutdownCoordinator.track(ShutdownCoordinator.Work.REPLY, tenant.withOutboundBudget(logged))
+                .toFuture();
+    }
 
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("messaging_product", "whatsapp");
-        payload.put("to", to);
-        payload.put("type", "text");
+    /**
+     * Prépare l'envoi d'un message sans s'y abonner ni passer par le budget d'envoi
+     * (utilisé par les diffusions, qui ont leur propre débit)
+     */
+    public Mono<String> send(TenantRuntime tenant, String to, String message) {
+        return sendEncoded(tenant, to, JSON_ENCODER.quoteAsUTF8(message));
+    }
 
-        Map<String, String> text = new HashMap<>();
-        text.put("body", message);
-        payload.put("text", text);
+    /**
+     * Construit le corps de la requête à partir du texte déjà échappé en JSON (UTF-8), sans sérialisation
+     */
+    private Mono<String> sendEncoded(TenantRuntime tenant, String to, byte[] escapedBody) {
+        byte[] recipient = JSON_ENCODER.quoteAsUTF8(to);
+        byte[] payload = new byte[PAYLOAD_PREFIX.length + recipient.length + PAYLOAD_MIDDLE.length
+                + escapedBody.length + PAYLOAD_SUFFIX.length];
 
-        WebClient webClient = webClientBuilder
-                .baseUrl(whatsappApiUrl)
-                .defaultHeader("Authorization", "Bearer " + accessToken)
-                .build();
+        int position = 0;
+        for (byte[] part : new byte[][]{PAYLOAD_PREFIX, recipient, PAYLOAD_MIDDLE, escapedBody, PAYLOAD_SUFFIX}) {
+            System.arraycopy(part, 0, payload, position, part.length);
+            position += part.length;
+        }
 
-        webClient.post()
-                .uri("/{phone_number_id}/messages", phoneNumberId)
+        return tenant.client().post()
+                .uri("/{phone_number_id}/messages", tenant.getTenant().getPhoneNumberId())
+                .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(payload)
                 .retrieve()
-                .bodyToMono(String.class)
-                .doOnSuccess(response -> log.info("Message sent successfully: {}", response))
-                .doOnError(error -> log.error("Error sending message", error))
-                .subscribe();
+                .bodyToMono(String.class);
     }
 }
@@ -0,0 +1,153 @@
+package com.st.chatbot_whatsapp.tools;
+
+import com.st.chatbot_whatsapp.model.Intent;
+import com.st.chatbot_whatsapp.service.IntentModel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Outil hors ligne d'entraînement du classifieur d'intentions
+ *
+ * Usage : IntentModelTrainer [données.tsv] [modèle.bin.gz]
+ * Le fichier de données contient une ligne "INTENTION\ttexte" par exemple ; chaque exemple est
+ * complété par des variantes bruitées (fautes de frappe, accents manquants) avant l'entraînement
+ */
+public class IntentModelTrainer {
+
+    private static final String DEFAULT_DATA = "src/main/resources/nlp/intent-training.tsv";
+    private static final String DEFAULT_MODEL = "src/main/resources/nlp/intent-model.bin.gz";
+
+    private static final int MIN_N = 2;
+    private static final int MAX_N = 4;
+    private static final int BUCKETS = 1 << 12;
+
+    private static final int EPOCHS = 30;
+    private static final int NOISY_VARIANTS = 4;
+    private static final float LEARNING_RATE = 0.5f;
+    private static final float L2 = 1e-5f;
+    private static final long SEED = 42L;
+
+    public static void main(String[] args) throws IOException {
+        Path data = Paths.get(args.length > 0 ? args[0] : DEFAULT_DATA);
+        Path output = Paths.get(args.length > 1 ? args[1] : DEFAULT_MODEL);
+
+        List<Example> examples = readExamples(data);
+        Random random = new Random(SEED);
+        List<Example> augmented = augment(examples, random);
+
+        String[] labels = Arrays.stream(Intent.values()).map(Intent::name).toArray(String[]::new);
+        IntentModel model = new IntentModel(labels, MIN_N, MAX_N, BUCKETS);
+
+        long start = System.nanoTime();
+        train(model, augmented, random);
+        long trainingMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("Trained on %d examples (%d with variants) in %d ms, training accuracy %.3f%n",
+                examples.size(), augmented.size(), trainingMillis, accuracy(model, examples));
+
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(output))) {
+            model.write(out);
+        }
+        System.out.println("Model written to " + output);
+    }
+
+    private static List<Example> readExamples(Path data) throws IOException {
+        List<Example> examples = new ArrayList<>();
+        for (String line : Files.readAllLines(data, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\t", 2);
+            if (columns.length != 2) {
+                throw new IllegalArgumentException("Invalid training line: " + line);
+            }
+            examples.add(new Example(Intent.valueOf(columns[0].trim()).ordinal(), columns[1].trim()));
+        }
+        return examples;
+    }
+
+    private static List<Example> augment(List<Example> examples, Random random) {
+        List<Example> augmented = new ArrayList<>(examples);
+        for (Example example : examples) {
+            for (int i = 0; i < NOISY_VARIANTS; i++) {
+                augmented.add(new Example(example.label(), addNoise(example.text(), random)));
+            }
+        }
+        return augmented;
+    }
+
+    /**
+     * Introduit une faute de frappe : suppression, doublement, inversion ou remplacement d'un caractère
+     */
+    private static String addNoise(String text, Random random) {
+        if (text.length() < 4) {
+            return text;
+        }
+
+        StringBuilder noisy = new StringBuilder(text);
+        int position = 1 + random.nextInt(noisy.length() - 2);
+        switch (random.nextInt(4)) {
+            case 0 -> noisy.deleteCharAt(position);
+            case 1 -> noisy.insert(position, noisy.charAt(position));
+            case 2 -> {
+                char c = noisy.charAt(position);
+                noisy.setCharAt(position, noisy.charAt(position + 1));
+                noisy.setCharAt(position + 1, c);
+            }
+            default -> noisy.setCharAt(position, (char) ('a' + random.nextInt(26)));
+        }
+        return noisy.toString();
+    }
+
+    private static void train(IntentModel model, List<Example> examples, Random random) {
+        float[] scratch = new float[model.numClasses()];
+        List<Example> order = new ArrayList<>(examples);
+
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            Collections.shuffle(order, random);
+            float learningRate = LEARNING_RATE / (1 + epoch * 0.1f);
+
+            for (Example example : order) {
+                Features features = Features.of(model, example.text());
+                model.train(features.buckets(), features.count(), example.label(), learningRate, L2, scratch);
+            }
+        }
+    }
+
+    private static double accuracy(IntentModel model, List<Example> examples) {
+        float[] probabilities = new float[model.numClasses()];
+        int correct = 0;
+        for (Example example : examples) {
+            Features features = Features.of(model, example.text());
+            if (model.predict(features.buckets(), features.count(), probabilities) == example.label()) {
+                correct++;
+            }
+        }
+        return examples.isEmpty() ? 0 : (double) correct / examples.size();
+    }
+
+    private record Example(int label, String text) {
+    }
+
+    private record Features(int[] buckets, int count) {
+
+        private static Features of(IntentModel model, String text) {
+            char[] chars = new char[IntentModel.charBufferSize(text.length())];
+            int length = IntentModel.normalize(text, chars);
+            int[] buckets = new int[model.featureBufferSize(text.length())];
+            return new Features(buckets, model.extractFeatures(chars, length, buckets));
+        }
+    }
+}
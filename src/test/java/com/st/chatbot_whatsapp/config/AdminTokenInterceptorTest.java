@@ -0,0 +1,45 @@
+package com.st.chatbot_whatsapp.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Un seul jeton protège tous les endpoints opérateur
+ */
+@SpringBootTest(properties = {
+        "whatsapp.admin.token=secret",
+        "analytics.directory=target/admin-test/analytics",
+        "whatsapp.broadcast.directory=target/admin-test/broadcasts"
+})
+@AutoConfigureMockMvc
+class AdminTokenInterceptorTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void rejectsMissingOrWrongToken() throws Exception {
+        mockMvc.perform(get("/tenants")).andExpect(status().isForbidden());
+        mockMvc.perform(get("/broadcast").header(AdminTokenInterceptor.ADMIN_TOKEN_HEADER, "wrong"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void acceptsConfiguredToken() throws Exception {
+        mockMvc.perform(get("/tenants").header(AdminTokenInterceptor.ADMIN_TOKEN_HEADER, "secret"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/broadcast").header(AdminTokenInterceptor.ADMIN_TOKEN_HEADER, "secret"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void leavesWebhookOpen() throws Exception {
+        mockMvc.perform(get("/webhook/test-config")).andExpect(status().isOk());
+    }
+}
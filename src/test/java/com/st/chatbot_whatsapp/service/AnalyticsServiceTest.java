@@ -0,0 +1,109 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.dto.AnalyticsReport;
+import com.st.chatbot_whatsapp.model.AnalyticsEvent;
+import com.st.chatbot_whatsapp.model.Intent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Analytics sur disque : agrégats par minute relus après redémarrage, événements rangés dans le fichier de leur heure
+ */
+class AnalyticsServiceTest {
+
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HH").withZone(ZoneOffset.UTC);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reloadsMinuteRollupsAfterRestart() throws Exception {
+        long twoMinutesAgo = System.currentTimeMillis() - 120_000;
+        AnalyticsService analytics = start();
+        analytics.record(event(twoMinutesAgo, Intent.WEATHER, "Paris", true));
+        analytics.record(event(twoMinutesAgo, Intent.WEATHER, "Paris", false));
+        analytics.record(event(twoMinutesAgo + 1, Intent.WEATHER, "Lyon", false));
+        analytics.record(event(twoMinutesAgo + 2, Intent.GREETING, null, false));
+        analytics.stop();
+
+        AnalyticsService restarted = start();
+        AnalyticsReport report = restarted.getReport(10, 5);
+        restarted.stop();
+
+        assertThat(report.getEvents()).isEqualTo(4);
+        assertThat(report.getCacheHitRatio()).isEqualTo(1.0 / 3);
+        assertThat(report.getAverageLatencyMicros()).isEqualTo(1000.0);
+        assertThat(report.getIntents()).extracting(AnalyticsReport.Entry::getKey, AnalyticsReport.Entry::getCount)
+                .containsExactly(tuple("WEATHER", 3L), tuple("GREETING", 1L));
+        assertThat(report.getCities()).extracting(AnalyticsReport.Entry::getKey).containsExactly("Paris", "Lyon");
+    }
+
+    @Test
+    void splitsBatchAcrossHourBoundary() throws Exception {
+        long hourStart = Instant.now().truncatedTo(ChronoUnit.HOURS).toEpochMilli();
+        long beforeHour = hourStart - 1_000;
+        long afterHour = hourStart + 1_000;
+
+        AnalyticsService analytics = start();
+        analytics.record(event(beforeHour, Intent.GREETING, null, false));
+        analytics.record(event(afterHour, Intent.HELP, null, false));
+        analytics.record(event(beforeHour + 1, Intent.THANKS, null, false));
+        analytics.stop();
+
+        assertThat(timestamps(beforeHour)).containsExactly(beforeHour, beforeHour + 1);
+        assertThat(timestamps(afterHour)).containsExactly(afterHour);
+    }
+
+    private AnalyticsService start() {
+        AnalyticsService analytics = new AnalyticsService();
+        ReflectionTestUtils.setField(analytics, "directory", directory.toString());
+        ReflectionTestUtils.setField(analytics, "bufferSize", 1024);
+        // Pas d'écriture périodique : stop() vide le tampon une seule fois
+        ReflectionTestUtils.setField(analytics, "flushIntervalMs", 3_600_000L);
+        ReflectionTestUtils.setField(analytics, "retentionHours", 24L);
+        analytics.start();
+        return analytics;
+    }
+
+    private static AnalyticsEvent event(long timestamp, Intent intent, String city, boolean cacheHit) {
+        return new AnalyticsEvent(timestamp, intent, city, cacheHit, 100, intent == Intent.WEATHER ? 500 : -1, 1000);
+    }
+
+    /**
+     * Colonne ts de tous les lots du fichier horaire contenant cet instant
+     */
+    private List<Long> timestamps(long millis) throws IOException {
+        Path file = directory.resolve("events-" + HOUR_FORMAT.format(Instant.ofEpochMilli(millis)) + ".col.gz");
+        List<Long> timestamps = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("ts=")) {
+                    for (String value : line.substring(3).split(",")) {
+                        timestamps.add(Long.parseLong(value));
+                    }
+                }
+            }
+        }
+        return timestamps;
+    }
+}
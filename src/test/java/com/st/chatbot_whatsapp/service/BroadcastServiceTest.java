@@ -0,0 +1,177 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.model.BroadcastStatus;
+import com.st.chatbot_whatsapp.model.Tenant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Diffusions reprenables : format du checkpoint, reprise à la position enregistrée, pause persistée et purge
+ */
+class BroadcastServiceTest {
+
+    private static final List<String> RECIPIENTS = IntStream.range(0, 10).mapToObj(i -> "3368000000" + i).toList();
+
+    @TempDir
+    Path directory;
+
+    private final WhatsAppService whatsAppService = mock(WhatsAppService.class);
+    private final ConversationContextService contextService = mock(ConversationContextService.class);
+    private final TenantRegistry tenantRegistry = mock(TenantRegistry.class);
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private volatile boolean hold;
+
+    private BroadcastService service;
+
+    @BeforeEach
+    void setUp() {
+        TenantRuntime tenant = new TenantRuntime(Tenant.builder()
+                .id("shop").phoneNumberId("111").accessToken("tok").maxWorkers(1).templates(Map.of()).build(),
+                WebClient.create());
+        when(tenantRegistry.get("shop")).thenReturn(Optional.of(tenant));
+        when(contextService.getRecentUsersRetention()).thenReturn(Duration.ofHours(48));
+        when(contextService.streamRecentUserIds(eq("shop"), any())).thenAnswer(invocation -> RECIPIENTS.stream());
+        // Envoi bloqué tant que hold est vrai, pour mettre en pause une diffusion en cours
+        when(whatsAppService.send(any(), anyString(), anyString())).thenAnswer(invocation -> hold
+                ? Mono.never()
+                : Mono.fromSupplier(() -> {
+                    delivered.add(invocation.getArgument(1));
+                    return "{}";
+                }));
+        service = newService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void deliversEveryRecipientAndMarksCheckpointDone() throws Exception {
+        BroadcastStatus started = service.startBroadcast("shop", "Nouveautés", null);
+
+        awaitState(service, started.getId(), BroadcastStatus.State.COMPLETED);
+        assertThat(delivered).containsExactlyElementsOf(RECIPIENTS);
+        assertThat(checkpoint(started.getId())).isEqualTo("DONE 10");
+    }
+
+    @Test
+    void resumesInterruptedBroadcastFromCheckpointAfterRestart() throws Exception {
+        prepare("bc-running", "RUNNING 4");
+        // Ancien format : position seule, diffusion interrompue
+        prepare("bc-legacy", "7");
+        prepare("bc-done", "DONE 10");
+
+        service.resumePendingBroadcasts();
+
+        awaitState(service, "bc-running", BroadcastStatus.State.COMPLETED);
+        awaitState(service, "bc-legacy", BroadcastStatus.State.COMPLETED);
+        assertThat(service.getStatus("bc-done")).isEmpty();
+        // Positions 4 à 9 pour la première, 7 à 9 pour la seconde
+        assertThat(delivered).hasSize(6 + 3)
+                .containsAll(RECIPIENTS.subList(4, 10))
+                .doesNotContainAnyElementsOf(RECIPIENTS.subList(0, 4));
+        assertThat(checkpoint("bc-running")).isEqualTo("DONE 10");
+    }
+
+    @Test
+    void pausedBroadcastIsPersistedAndOnlyResumedOnRequest() throws Exception {
+        hold = true;
+        String id = service.startBroadcast("shop", "Nouveautés", null).getId();
+        Thread.sleep(100);
+
+        assertThat(service.cancel(id)).map(BroadcastStatus::getState).contains(BroadcastStatus.State.PAUSED);
+        assertThat(checkpoint(id)).isEqualTo("PAUSED 0");
+
+        // Redémarrage : la pause opérateur n'est pas reprise automatiquement
+        service.shutdown();
+        hold = false;
+        service = newService();
+        service.resumePendingBroadcasts();
+        assertThat(service.getStatus(id)).isEmpty();
+
+        assertThat(service.resume(id)).isPresent();
+        awaitState(service, id, BroadcastStatus.State.COMPLETED);
+        assertThat(delivered).containsExactlyElementsOf(RECIPIENTS);
+        assertThat(checkpoint(id)).isEqualTo("DONE 10");
+    }
+
+    @Test
+    void prunesCompletedBroadcastsOutsideRetention() throws Exception {
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(8)));
+        prepare("bc-old-done", "DONE 10");
+        prepare("bc-recent-done", "DONE 10");
+        prepare("bc-old-paused", "PAUSED 3");
+        Files.setLastModifiedTime(directory.resolve("bc-old-done.checkpoint"), old);
+        Files.setLastModifiedTime(directory.resolve("bc-old-paused.checkpoint"), old);
+
+        service.resumePendingBroadcasts();
+
+        try (var files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                    .noneMatch(name -> name.startsWith("bc-old-done"))
+                    .contains("bc-recent-done.recipients", "bc-old-paused.recipients", "bc-old-paused.checkpoint");
+        }
+    }
+
+    private BroadcastService newService() {
+        BroadcastService broadcasts = new BroadcastService(whatsAppService, contextService, tenantRegistry,
+                new MessageLogPolicy(1.0, 64, ""));
+        ReflectionTestUtils.setField(broadcasts, "directory", directory.toString());
+        ReflectionTestUtils.setField(broadcasts, "ratePerSecond", 1000);
+        ReflectionTestUtils.setField(broadcasts, "maxInFlight", 4);
+        ReflectionTestUtils.setField(broadcasts, "maxRetries", 0);
+        ReflectionTestUtils.setField(broadcasts, "checkpointEvery", 3);
+        ReflectionTestUtils.setField(broadcasts, "defaultRecentHours", 24L);
+        ReflectionTestUtils.setField(broadcasts, "retentionHours", 168L);
+        return broadcasts;
+    }
+
+    /**
+     * Fichiers d'une diffusion laissée par une instance précédente
+     */
+    private void prepare(String id, String checkpoint) throws IOException {
+        Files.write(directory.resolve(id + ".recipients"), RECIPIENTS, StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve(id + ".message"), "Nouveautés", StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve(id + ".tenant"), "shop", StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve(id + ".checkpoint"), checkpoint, StandardCharsets.UTF_8);
+    }
+
+    private String checkpoint(String id) throws IOException {
+        return Files.readString(directory.resolve(id + ".checkpoint"), StandardCharsets.UTF_8);
+    }
+
+    private static void awaitState(BroadcastService service, String id, BroadcastStatus.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getStatus(id).map(BroadcastStatus::getState).filter(state::equals).isEmpty()) {
+            assertThat(System.nanoTime()).as("broadcast %s reaching %s", id, state).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
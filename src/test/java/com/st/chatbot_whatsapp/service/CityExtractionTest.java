@@ -0,0 +1,57 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.model.Language;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Extraction de la ville sur les formulations courantes de chaque langue : les patterns spécifiques
+ * doivent passer avant le pattern ancré en début de message
+ */
+class CityExtractionTest {
+
+    private static IntentDetectorService detector;
+
+    @BeforeAll
+    static void setUp() {
+        detector = new IntentDetectorService(new IntentClassifier(), new LanguageBundleService());
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "fr | météo à Paris                      | Paris",
+            "fr | quel temps fait-il à Lyon           | Lyon",
+            "fr | quelle est la météo à Marseille     | Marseille",
+            "fr | Bordeaux météo                      | Bordeaux",
+            "en | weather in London                   | London",
+            "en | what's the weather like in Berlin   | Berlin",
+            "en | What is the temperature in New York | New York",
+            "en | is it raining in Manchester         | Manchester",
+            "en | Dublin weather                      | Dublin",
+            "es | ¿Qué tiempo hace en Sevilla?        | Sevilla",
+            "es | tiempo en Madrid                    | Madrid",
+            "es | ¿Cómo está el clima en Valencia?    | Valencia",
+            "es | Bilbao tiempo                       | Bilbao",
+            "pt | tempo em Lisboa                     | Lisboa",
+            "pt | como está o tempo no Porto          | Porto",
+            "pt | Que tempo faz em Coimbra?           | Coimbra",
+            "pt | Braga tempo                         | Braga"
+    })
+    void extractsCityFromCommonPhrasings(String code, String message, String city) {
+        assertThat(detector.extractCity(message, Language.fromCode(code))).contains(city);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "fr | quel temps fait-il",
+            "en | what's the weather",
+            "es | ¿qué tiempo hace?",
+            "pt | que tempo faz"
+    })
+    void doesNotTakeQuestionWordsForACity(String code, String message) {
+        assertThat(detector.extractCity(message, Language.fromCode(code))).isEmpty();
+    }
+}
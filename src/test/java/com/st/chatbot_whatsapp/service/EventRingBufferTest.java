@@ -0,0 +1,98 @@
+package com.st.chatbot_whatsapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tampon sans verrou : ni perte ni doublon sous plusieurs producteurs, abandons comptés quand il est plein
+ */
+class EventRingBufferTest {
+
+    @Test
+    void dropsAndCountsWhenFull() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(6);
+        assertThat(buffer.capacity()).isEqualTo(8);
+
+        for (int i = 0; i < 8; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+        assertThat(buffer.offer(8)).isFalse();
+        assertThat(buffer.offer(9)).isFalse();
+        assertThat(buffer.droppedCount()).isEqualTo(2);
+
+        // Les places libérées par le consommateur sont réutilisées, dans l'ordre
+        List<Integer> drained = new ArrayList<>();
+        assertThat(buffer.drainTo(drained::add, 3)).isEqualTo(3);
+        assertThat(buffer.offer(10)).isTrue();
+        assertThat(buffer.drainTo(drained::add, 100)).isEqualTo(6);
+        assertThat(drained).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 10);
+    }
+
+    @Test
+    void neitherLosesNorDuplicatesUnderConcurrentProducers() throws Exception {
+        int producers = 4;
+        int perProducer = 200_000;
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(1024);
+        BitSet received = new BitSet(producers * perProducer);
+        int[] duplicates = new int[1];
+        AtomicBoolean producing = new AtomicBoolean(true);
+
+        // Consommateur unique qui vide en continu, comme le thread d'écriture
+        Thread consumer = new Thread(() -> {
+            while (true) {
+                boolean last = !producing.get();
+                int drained = buffer.drainTo(value -> {
+                    if (received.get(value)) {
+                        duplicates[0]++;
+                    }
+                    received.set(value);
+                }, 256);
+                if (last && drained == 0) {
+                    return;
+                }
+            }
+        });
+        consumer.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> accepted = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            accepted.add(pool.submit(() -> {
+                start.await();
+                int count = 0;
+                for (int i = 0; i < perProducer; i++) {
+                    if (buffer.offer(base + i)) {
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+        start.countDown();
+
+        long offered = 0;
+        for (Future<Integer> future : accepted) {
+            offered += future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        producing.set(false);
+        consumer.join(TimeUnit.SECONDS.toMillis(30));
+
+        assertThat(duplicates[0]).isZero();
+        assertThat(received.cardinality()).isEqualTo(offered);
+        assertThat(offered + buffer.droppedCount()).isEqualTo((long) producers * perProducer);
+    }
+}
@@ -0,0 +1,131 @@
+package com.st.chatbot_whatsapp.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.st.chatbot_whatsapp.model.Intent;
+import com.st.chatbot_whatsapp.model.Language;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rapport précision / latence du classifieur face aux règles par mots-clés, sur un jeu d'évaluation séparé
+ */
+class IntentClassifierTest {
+
+    private static final int LATENCY_ROUNDS = 200;
+
+    private static IntentClassifier classifier;
+    private static IntentDetectorService detector;
+    private static List<String[]> evaluation;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        ((Logger) LoggerFactory.getLogger(IntentDetectorService.class)).setLevel(Level.WARN);
+
+        classifier = new IntentClassifier();
+        ReflectionTestUtils.setField(classifier, "modelResource", "nlp/intent-model.bin.gz");
+        classifier.load();
+
+        detector = new IntentDetectorService(classifier, new LanguageBundleService());
+        ReflectionTestUtils.setField(detector, "confidenceThreshold", 0.6f);
+
+        evaluation = new ArrayList<>();
+        try (InputStream in = IntentClassifierTest.class.getResourceAsStream("/nlp/intent-eval.tsv")) {
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    evaluation.add(line.split("\t", 2));
+                }
+            }
+        }
+    }
+
+    @Test
+    void reportsAccuracyAndLatencyAgainstKeywordRules() {
+        assertThat(classifier.isAvailable()).isTrue();
+
+        int modelCorrect = 0;
+        int keywordCorrect = 0;
+        for (String[] example : evaluation) {
+            Intent expected = Intent.valueOf(example[0]);
+            if (detector.detectIntent(example[1], Language.FR) == expected) {
+                modelCorrect++;
+            }
+            if (detector.detectIntentByKeywords(example[1], Language.FR).getIntent() == expected) {
+                keywordCorrect++;
+            }
+        }
+
+        double modelAccuracy = (double) modelCorrect / evaluation.size();
+        double keywordAccuracy = (double) keywordCorrect / evaluation.size();
+
+        float[] probabilities = new float[Intent.values().length];
+        double classifierMicros = measureMicros(text -> classifier.classify(text, probabilities));
+        double keywordMicros = measureMicros(text -> detector.detectIntentByKeywords(text, Language.FR));
+
+        System.out.printf("Intent detection on %d examples%n", evaluation.size());
+        System.out.printf("  model + fallback : accuracy %.3f, classifier %.2f us/message%n", modelAccuracy, classifierMicros);
+        System.out.printf("  keyword rules    : accuracy %.3f, %.2f us/message%n", keywordAccuracy, keywordMicros);
+
+        assertThat(modelAccuracy).isGreaterThan(keywordAccuracy);
+        assertThat(modelAccuracy).isGreaterThanOrEqualTo(0.8);
+    }
+
+    @Test
+    void classifyDoesNotAllocateOnceWarmedUp() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        float[] probabilities = new float[Intent.values().length];
+        String text = "quel temps fait-il à Marseille demain ?";
+
+        for (int i = 0; i < 20_000; i++) {
+            classifier.classify(text, probabilities);
+        }
+
+        long threadId = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10_000; i++) {
+            classifier.classify(text, probabilities);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(allocated).isLessThan(1024);
+    }
+
+    @Test
+    void probabilitiesSumToOne() {
+        float[] probabilities = new float[Intent.values().length];
+        Intent intent = classifier.classify("merci beaucoup", probabilities);
+
+        float sum = 0f;
+        for (float probability : probabilities) {
+            sum += probability;
+        }
+        assertThat(intent).isEqualTo(Intent.THANKS);
+        assertThat(sum).isBetween(0.99f, 1.01f);
+    }
+
+    private double measureMicros(Consumer<String> detection) {
+        for (int round = 0; round < LATENCY_ROUNDS; round++) {
+            evaluation.forEach(example -> detection.accept(example[1]));
+        }
+
+        long start = System.nanoTime();
+        for (int round = 0; round < LATENCY_ROUNDS; round++) {
+            for (String[] example : evaluation) {
+                detection.accept(example[1]);
+            }
+        }
+        return (System.nanoTime() - start) / 1_000.0 / (LATENCY_ROUNDS * evaluation.size());
+    }
+}
@@ -0,0 +1,119 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.dto.ConfigStatus;
+import com.st.chatbot_whatsapp.model.Language;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rechargement des règles du bot depuis le répertoire de surcharge : publication, rejet et repli d'une langue invalide
+ */
+class LanguageBundleServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private LanguageBundleService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new LanguageBundleService();
+        ReflectionTestUtils.setField(service, "configDirectory", directory.toString());
+    }
+
+    @Test
+    void publishesValidOverrides() throws IOException {
+        String bundled = service.get(Language.FR).template("reply.THANKS");
+        write("fr.properties", "reply.THANKS=Avec plaisir !\nkeywords.THANKS=merci,trop cool\n");
+
+        assertThat(service.reload()).isTrue();
+        assertThat(service.get(Language.FR).template("reply.THANKS")).isEqualTo("Avec plaisir !").isNotEqualTo(bundled);
+        assertThat(service.getStatus().getVersion()).isEqualTo(1);
+        assertThat(service.getStatus().getLastError()).isNull();
+    }
+
+    @Test
+    void keepsActiveSnapshotWhenReloadIsInvalid() throws IOException {
+        write("fr.properties", "reply.THANKS=Avec plaisir !\n");
+        assertThat(service.reload()).isTrue();
+
+        write("fr.properties", "reply.THANKS=Cassé\nweather.format=%d %d\n");
+        assertThat(service.reload()).isFalse();
+
+        assertThat(service.get(Language.FR).template("reply.THANKS")).isEqualTo("Avec plaisir !");
+        assertThat(service.getStatus().getVersion()).isEqualTo(1);
+        assertThat(service.getStatus().getLastError()).isNotNull();
+    }
+
+    @Test
+    void rejectsInvalidFileOfLanguageNotYetLoaded() throws IOException {
+        service.get(Language.FR);
+        write("es.properties", "city.pattern.1=sin grupo\n");
+
+        assertThat(service.reload()).isFalse();
+        assertThat(service.getStatus().getLastError()).contains("city.pattern.1");
+    }
+
+    @Test
+    void cachesFallbackForInvalidLanguage() throws IOException {
+        LanguageBundle defaultBundle = service.get(Language.DEFAULT);
+        write("es.properties", "city.pattern.1=sin grupo\n");
+
+        assertThat(service.get(Language.ES)).isSameAs(defaultBundle);
+        // Repli mémorisé dans le snapshot : pas de nouvelle compilation au message suivant
+        assertThat(service.getSnapshot().getBundle(Language.ES)).isSameAs(defaultBundle);
+        assertThat(service.get(Language.ES)).isSameAs(defaultBundle);
+
+        ConfigStatus status = service.getStatus();
+        assertThat(status.getLastError()).startsWith("es:");
+        assertThat(status.getLanguages()).containsExactly("fr");
+
+        // Fichier corrigé : le rechargement publie la langue
+        Files.delete(directory.resolve("es.properties"));
+        assertThat(service.reload()).isTrue();
+        assertThat(service.get(Language.ES).getLanguage()).isEqualTo(Language.ES);
+    }
+
+    @Test
+    void reloadsWhenConfigMapVolumeIsSwapped() throws Exception {
+        // Disposition d'un volume ConfigMap : fr.properties -> ..data/fr.properties, ..data -> ..<version>
+        Path firstVersion = Files.createDirectory(directory.resolve("..v1"));
+        Files.writeString(firstVersion.resolve("fr.properties"), "reply.THANKS=Version 1\n", StandardCharsets.UTF_8);
+        Files.createSymbolicLink(directory.resolve("..data"), Path.of("..v1"));
+        Files.createSymbolicLink(directory.resolve("fr.properties"), Path.of("..data", "fr.properties"));
+        service.start();
+        try {
+            assertThat(service.get(Language.FR).template("reply.THANKS")).isEqualTo("Version 1");
+
+            // Mise à jour par kubelet : nouvelle version puis remplacement atomique du lien ..data
+            Path secondVersion = Files.createDirectory(directory.resolve("..v2"));
+            Files.writeString(secondVersion.resolve("fr.properties"), "reply.THANKS=Version 2\n", StandardCharsets.UTF_8);
+            Files.createSymbolicLink(directory.resolve("..data_tmp"), Path.of("..v2"));
+            Files.move(directory.resolve("..data_tmp"), directory.resolve("..data"), StandardCopyOption.ATOMIC_MOVE);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (service.getStatus().getVersion() == 0) {
+                assertThat(System.nanoTime()).isLessThan(deadline);
+                Thread.sleep(50);
+            }
+            assertThat(service.get(Language.FR).template("reply.THANKS")).isEqualTo("Version 2");
+        } finally {
+            service.stop();
+        }
+    }
+
+    private void write(String fileName, String content) throws IOException {
+        Files.writeString(directory.resolve(fileName), content, StandardCharsets.UTF_8);
+    }
+}
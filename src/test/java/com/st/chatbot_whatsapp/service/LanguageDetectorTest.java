@@ -0,0 +1,49 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.model.Language;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Détection de la langue des messages typiques ; les messages trop courts restent non attribués
+ */
+class LanguageDetectorTest {
+
+    private static LanguageDetector detector;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        detector = new LanguageDetector();
+        ReflectionTestUtils.setField(detector, "minMargin", 0.3);
+        detector.load();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "fr | quel temps fait-il à Lyon ?",
+            "fr | je veux la météo de Douala",
+            "en | what's the weather in Berlin",
+            "en | is it raining in London today",
+            "es | ¿qué tiempo hace en Sevilla?",
+            "es | el tiempo en Madrid por favor",
+            "pt | como está o tempo em Lisboa",
+            "pt | previsão do tempo em São Paulo"
+    })
+    void detectsLanguageOfTypicalMessages(String code, String message) {
+        assertThat(detector.detect(message)).contains(Language.fromCode(code));
+    }
+
+    @Test
+    void leavesVeryShortMessagesUnattributed() {
+        assertThat(detector.detect("ok")).isEmpty();
+        assertThat(detector.detect("oi")).isEmpty();
+        assertThat(detector.detect(null)).isEmpty();
+    }
+}
@@ -0,0 +1,115 @@
+package com.st.chatbot_whatsapp.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Budget d'envoi : appels simultanés, file bornée, annulation d'un appel en attente ou en cours, et débit
+ */
+class OutboundBudgetTest {
+
+    private final AtomicInteger started = new AtomicInteger();
+
+    @Test
+    void queuesBeyondConcurrencyAndRejectsWhenQueueIsFull() {
+        OutboundBudget budget = new OutboundBudget(2, 1, 0);
+        List<Sinks.One<String>> calls = new ArrayList<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        for (int i = 0; i < 3; i++) {
+            budget.run(call(calls)).subscribe();
+        }
+        assertThat(started.get()).isEqualTo(2);
+        assertThat(budget.getInFlight()).isEqualTo(2);
+        assertThat(budget.getQueued()).isEqualTo(1);
+
+        budget.run(call(calls)).subscribe(value -> { }, error::set);
+        assertThat(error.get()).isInstanceOf(RejectedExecutionException.class);
+        assertThat(budget.getRejected()).isEqualTo(1);
+
+        // La place libérée passe directement à l'appel en attente
+        calls.get(0).tryEmitValue("ok");
+        assertThat(started.get()).isEqualTo(3);
+        assertThat(budget.getInFlight()).isEqualTo(2);
+        assertThat(budget.getQueued()).isZero();
+
+        calls.get(1).tryEmitValue("ok");
+        calls.get(2).tryEmitValue("ok");
+        assertThat(budget.getInFlight()).isZero();
+    }
+
+    @Test
+    void cancellingQueuedCallFreesItsPlace() {
+        OutboundBudget budget = new OutboundBudget(1, 1, 0);
+        List<Sinks.One<String>> calls = new ArrayList<>();
+
+        budget.run(call(calls)).subscribe();
+        Disposable queued = budget.run(call(calls)).subscribe();
+        assertThat(budget.getQueued()).isEqualTo(1);
+
+        queued.dispose();
+        assertThat(budget.getQueued()).isZero();
+
+        // La file accepte un nouvel appel, qui démarre à la place de l'appel annulé
+        AtomicReference<String> result = new AtomicReference<>();
+        budget.run(Mono.just("next")).subscribe(result::set);
+        assertThat(budget.getQueued()).isEqualTo(1);
+
+        calls.get(0).tryEmitValue("ok");
+        assertThat(result.get()).isEqualTo("next");
+        assertThat(started.get()).isEqualTo(1);
+        assertThat(budget.getInFlight()).isZero();
+    }
+
+    @Test
+    void cancellingRunningCallHandsItsPlaceToNextWaiter() {
+        OutboundBudget budget = new OutboundBudget(1, 1, 0);
+        List<Sinks.One<String>> calls = new ArrayList<>();
+
+        Disposable running = budget.run(call(calls)).subscribe();
+        budget.run(call(calls)).subscribe();
+        assertThat(started.get()).isEqualTo(1);
+
+        running.dispose();
+        assertThat(started.get()).isEqualTo(2);
+        assertThat(budget.getInFlight()).isEqualTo(1);
+        assertThat(budget.getQueued()).isZero();
+
+        calls.get(1).tryEmitValue("ok");
+        assertThat(budget.getInFlight()).isZero();
+    }
+
+    @Test
+    void pacesCallsAtConfiguredRate() {
+        OutboundBudget budget = new OutboundBudget(10, 10, 20);
+
+        long start = System.nanoTime();
+        List<Long> startedAt = Flux.range(0, 5)
+                .flatMap(i -> budget.run(Mono.fromCallable(System::nanoTime)))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // 20 appels par seconde : un créneau toutes les 50 ms, le premier immédiatement
+        assertThat(startedAt).hasSize(5);
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(190);
+    }
+
+    private Mono<String> call(List<Sinks.One<String>> calls) {
+        Sinks.One<String> sink = Sinks.one();
+        calls.add(sink);
+        return sink.asMono().doOnSubscribe(subscription -> started.incrementAndGet());
+    }
+}
@@ -0,0 +1,123 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.dto.WeatherResponse;
+import com.st.chatbot_whatsapp.model.Language;
+import com.st.chatbot_whatsapp.model.RenderedReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cache des réponses rendues : réutilisé pour une même observation, invalidé par une nouvelle observation (dt)
+ * ou de nouvelles ressources de langue, jamais partagé entre tenants ni entre langues
+ */
+class RenderedReplyCacheTest {
+
+    private static final String SHOP_FORMAT = "Shop %s %s %s %.1f %.1f %s %.1f %d %d";
+
+    @TempDir
+    Path configDirectory;
+
+    private LanguageBundleService bundles;
+    private RenderedReplyCache cache;
+
+    @BeforeEach
+    void setUp() {
+        bundles = new LanguageBundleService();
+        ReflectionTestUtils.setField(bundles, "configDirectory", configDirectory.toString());
+        WeatherService weatherService = new WeatherService(WebClient.builder(), new ConcurrentMapCacheManager(),
+                new MessageLogPolicy(1.0, 64, ""));
+        cache = new RenderedReplyCache(weatherService, 100);
+    }
+
+    @Test
+    void reusesRenderingOfSameObservation() {
+        LanguageBundle fr = bundles.get(Language.FR);
+
+        RenderedReply first = cache.render(weather(1_700_000_000L, 20.0), "shop", fr);
+
+        assertThat(cache.render(weather(1_700_000_000L, 20.0), "shop", fr)).isSameAs(first);
+        assertThat(first.getObservedAt()).isEqualTo(1_700_000_000L);
+        assertThat(new String(first.getJsonEscapedUtf8(), StandardCharsets.UTF_8)).contains("Paris");
+    }
+
+    @Test
+    void rendersAgainWhenObservationChanges() {
+        LanguageBundle fr = bundles.get(Language.FR);
+        RenderedReply first = cache.render(weather(1_700_000_000L, 20.0), "shop", fr);
+
+        RenderedReply next = cache.render(weather(1_700_000_600L, 25.0), "shop", fr);
+
+        assertThat(next).isNotSameAs(first);
+        assertThat(next.getObservedAt()).isEqualTo(1_700_000_600L);
+        assertThat(next.getText()).isNotEqualTo(first.getText());
+    }
+
+    @Test
+    void rendersAgainAfterBundleReload() throws IOException {
+        RenderedReply first = cache.render(weather(1_700_000_000L, 20.0), "shop", bundles.get(Language.FR));
+
+        Files.writeString(configDirectory.resolve("fr.properties"), "weather.format=" + SHOP_FORMAT + "\n", StandardCharsets.UTF_8);
+        assertThat(bundles.reload()).isTrue();
+        RenderedReply reloaded = cache.render(weather(1_700_000_000L, 20.0), "shop", bundles.get(Language.FR));
+
+        assertThat(reloaded).isNotSameAs(first);
+        assertThat(reloaded.getText()).startsWith("Shop");
+    }
+
+    @Test
+    void keepsTenantsAndLanguagesApart() {
+        LanguageBundle fr = bundles.get(Language.FR);
+        LanguageBundle shopFr = fr.withTemplates(Map.of("weather.format", SHOP_FORMAT));
+        LanguageBundle en = bundles.get(Language.EN);
+        WeatherResponse weather = weather(1_700_000_000L, 20.0);
+
+        RenderedReply bank = cache.render(weather, "bank", fr);
+        RenderedReply shop = cache.render(weather, "shop", shopFr);
+        RenderedReply bankEn = cache.render(weather, "bank", en);
+
+        assertThat(shop.getText()).startsWith("Shop");
+        assertThat(bank.getText()).doesNotStartWith("Shop").isNotEqualTo(bankEn.getText());
+        // Chaque entrée reste en cache indépendamment des autres
+        assertThat(cache.render(weather, "bank", fr)).isSameAs(bank);
+        assertThat(cache.render(weather, "shop", shopFr)).isSameAs(shop);
+        assertThat(cache.render(weather, "bank", en)).isSameAs(bankEn);
+    }
+
+    private static WeatherResponse weather(long dt, double temp) {
+        WeatherResponse.Weather condition = new WeatherResponse.Weather();
+        condition.setMain("Clear");
+        condition.setDescription("ciel dégagé");
+        WeatherResponse.Main main = new WeatherResponse.Main();
+        main.setTemp(temp);
+        main.setFeelsLike(temp - 1);
+        main.setHumidity(50);
+        main.setPressure(1013);
+        WeatherResponse.Wind wind = new WeatherResponse.Wind();
+        wind.setSpeed(1.0);
+        WeatherResponse.Sys sys = new WeatherResponse.Sys();
+        sys.setCountry("FR");
+
+        WeatherResponse weather = new WeatherResponse();
+        weather.setId(2988507L);
+        weather.setName("Paris");
+        weather.setDt(dt);
+        weather.setWeather(List.of(condition));
+        weather.setMain(main);
+        weather.setWind(wind);
+        weather.setSys(sys);
+        return weather;
+    }
+}
@@ -0,0 +1,194 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.st.chatbot_whatsapp.controller.WhatsAppWebhookController;
+import com.st.chatbot_whatsapp.dto.WebhookRequest;
+import com.st.chatbot_whatsapp.model.ShutdownReport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Arrêt sous charge : les webhooks arrivent pendant que l'API WhatsApp et OpenWeatherMap (bouchons locaux)
+ * répondent lentement, puis la séquence d'arrêt est déclenchée
+ */
+@SpringBootTest(properties = {
+        "whatsapp.shutdown.drain-timeout-ms=1500",
+        // Budget d'envoi non limitant : le test porte sur le drainage, pas sur le débit
+        "whatsapp.tenants.defaults.rate-per-second=0",
+        "whatsapp.tenants.defaults.max-in-flight-sends=64",
+        "whatsapp.tenants.defaults.max-queued-sends=10000",
+        "analytics.directory=target/shutdown-test/analytics",
+        "whatsapp.broadcast.directory=target/shutdown-test/broadcasts"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ShutdownCoordinatorTest {
+
+    private static final String WEATHER_BODY = "{\"id\":2988507,\"name\":\"Paris\",\"dt\":1700000000,"
+            + "\"weather\":[{\"main\":\"Clear\",\"description\":\"ciel dégagé\"}],"
+            + "\"main\":{\"temp\":20.0,\"humidity\":50,\"pressure\":1013},\"wind\":{\"speed\":1.0},\"sys\":{\"country\":\"FR\"}}";
+
+    private static final AtomicInteger repliesReceived = new AtomicInteger();
+    private static volatile long stubDelayMillis;
+    private static final HttpServer stub = startStub();
+
+    @Autowired
+    private WhatsAppWebhookController controller;
+
+    @Autowired
+    private ShutdownCoordinator shutdownCoordinator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        String baseUrl = "http://localhost:" + stub.getAddress().getPort();
+        registry.add("whatsapp.api.url", () -> baseUrl);
+        registry.add("weather.api.url", () -> baseUrl + "/weather");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.stop(0);
+    }
+
+    @BeforeEach
+    void resetStub() {
+        repliesReceived.set(0);
+    }
+
+    @Test
+    void drainsAcceptedWebhooksBeforeStopping() throws Exception {
+        stubDelayMillis = 200;
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        // Quatre émetteurs envoient des webhooks en continu jusqu'à être refusés
+        ExecutorService senders = Executors.newFixedThreadPool(4);
+        CountDownLatch warmedUp = new CountDownLatch(20);
+        for (int s = 0; s < 4; s++) {
+            int sender = s;
+            senders.submit(() -> {
+                for (int i = 0; ; i++) {
+                    String text = i % 2 == 0 ? "météo à Paris" : "bonjour";
+                    ResponseEntity<String> response = controller.receiveMessage(webhook("3360000" + sender + i, text));
+                    if (response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) {
+                        assertThat(response.getHeaders().getFirst("Retry-After")).isNotBlank();
+                        rejected.incrementAndGet();
+                        return null;
+                    }
+                    accepted.incrementAndGet();
+                    warmedUp.countDown();
+                    Thread.sleep(5);
+                }
+            });
+        }
+
+        assertThat(warmedUp.await(10, TimeUnit.SECONDS)).isTrue();
+        ShutdownReport report = shutdownCoordinator.drain();
+        senders.shutdown();
+        assertThat(senders.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(report.isDeadlineReached()).isFalse();
+        assertThat(report.getTotalDropped()).isZero();
+        assertThat(report.getRejectedWebhooks()).isEqualTo(rejected.get()).isEqualTo(4);
+        // Chaque webhook accepté a reçu sa réponse, y compris ceux encore en vol au début de l'arrêt
+        assertThat(repliesReceived.get()).isEqualTo(accepted.get());
+        assertThat(shutdownCoordinator.isAccepting()).isFalse();
+    }
+
+    @Test
+    void reportsWorkDroppedAtTheDeadline() throws Exception {
+        stubDelayMillis = 10_000;
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(controller.receiveMessage(webhook("3361000" + i, "bonjour")).getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertThat(controller.receiveMessage(webhook("3362000" + i, "météo à Lyon")).getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+
+        long start = System.nanoTime();
+        ShutdownReport report = shutdownCoordinator.drain();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(report.isDeadlineReached()).isTrue();
+        assertThat(report.getDroppedReplies()).isEqualTo(5);
+        assertThat(report.getDroppedWeatherLookups()).isEqualTo(3);
+        assertThat(report.getDroppedMessages()).isZero();
+        assertThat(elapsedMillis).isLessThan(5_000);
+
+        // Après l'échéance, aucun nouvel appel sortant n'est lancé
+        assertThat(controller.receiveMessage(webhook("33630000", "bonjour")).getStatusCode())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(shutdownCoordinator.drain()).isSameAs(report);
+    }
+
+    private WebhookRequest webhook(String from, String text) {
+        String json = "{\"object\":\"whatsapp_business_account\",\"entry\":[{\"changes\":[{\"value\":{\"messages\":"
+                + "[{\"from\":\"" + from + "\",\"type\":\"text\",\"text\":{\"body\":\"" + text + "\"}}]}}]}]}";
+        try {
+            return objectMapper.readValue(json, WebhookRequest.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Bouchon commun aux deux API : /weather répond la météo de Paris, le reste compte les réponses envoyées
+     */
+    private static HttpServer startStub() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/", ShutdownCoordinatorTest::handle);
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        boolean weather = exchange.getRequestURI().getPath().startsWith("/weather");
+        exchange.getRequestBody().readAllBytes();
+        try {
+            Thread.sleep(stubDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!weather) {
+            repliesReceived.incrementAndGet();
+        }
+
+        byte[] body = (weather ? WEATHER_BODY : "{\"messages\":[{\"id\":\"wamid.test\"}]}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        try {
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (IOException e) {
+            // Client parti (appel annulé à l'échéance)
+        } finally {
+            exchange.close();
+        }
+    }
+}
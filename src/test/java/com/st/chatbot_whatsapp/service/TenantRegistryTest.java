@@ -0,0 +1,160 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.st.chatbot_whatsapp.model.Language;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Registre des tenants : tenant unique par défaut, lecture du fichier, rechargement rejeté et admission des messages
+ */
+class TenantRegistryTest {
+
+    private static final String TENANTS = """
+            tenants.shop.phone-number-id=111
+            tenants.shop.access-token=${SHOP_TOKEN:missing}
+            tenants.shop.max-workers=2
+            tenants.shop.max-queued-messages=3
+            tenants.shop.template.fr.reply.GREETING=Bienvenue chez Shop %s !
+            tenants.bank.phone-number-id=222
+            tenants.bank.access-token=tok-bank
+            default=bank
+            """;
+
+    @TempDir
+    Path directory;
+
+    private final LanguageBundleService bundles = new LanguageBundleService();
+    private TenantRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new TenantRegistry(WebClient.builder(), bundles, new MockEnvironment().withProperty("SHOP_TOKEN", "tok-shop"));
+        ReflectionTestUtils.setField(registry, "whatsappApiUrl", "http://localhost");
+        ReflectionTestUtils.setField(registry, "phoneNumberId", "999");
+        ReflectionTestUtils.setField(registry, "accessToken", "tok-default");
+        ReflectionTestUtils.setField(registry, "defaultMaxWorkers", 4);
+        ReflectionTestUtils.setField(registry, "defaultMaxQueuedMessages", 200);
+        ReflectionTestUtils.setField(registry, "defaultMaxInFlightSends", 8);
+        ReflectionTestUtils.setField(registry, "defaultMaxQueuedSends", 500);
+        ReflectionTestUtils.setField(registry, "defaultRatePerSecond", 20.0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.stop();
+    }
+
+    @Test
+    void buildsSingleDefaultTenantWithoutFile() throws IOException {
+        registry.load();
+
+        TenantRuntime tenant = registry.getDefault();
+        assertThat(tenant.getId()).isEqualTo(TenantRegistry.DEFAULT_TENANT_ID);
+        assertThat(tenant.getTenant().getAccessToken()).isEqualTo("tok-default");
+        assertThat(registry.findByPhoneNumberId("999")).containsSame(tenant);
+        assertThat(registry.getStatus()).hasSize(1);
+    }
+
+    @Test
+    void parsesTenantsFromFile() throws IOException {
+        useFile(TENANTS);
+        registry.load();
+
+        TenantRuntime shop = registry.findByPhoneNumberId("111").orElseThrow();
+        assertThat(shop.getId()).isEqualTo("shop");
+        assertThat(shop.getTenant().getAccessToken()).isEqualTo("tok-shop");
+        assertThat(shop.getTenant().getMaxWorkers()).isEqualTo(2);
+        assertThat(shop.getTenant().getMaxInFlightSends()).isEqualTo(8);
+        assertThat(shop.bundle(bundles.get(Language.FR)).format("reply.GREETING", "Léa")).isEqualTo("Bienvenue chez Shop Léa !");
+
+        TenantRuntime bank = registry.getDefault();
+        assertThat(bank.getId()).isEqualTo("bank");
+        assertThat(bank.bundle(bundles.get(Language.FR))).isSameAs(bundles.get(Language.FR));
+        assertThat(registry.findByPhoneNumberId("999")).isEmpty();
+    }
+
+    @Test
+    void rejectsInvalidConfigurationAtStartup() throws IOException {
+        useFile(TENANTS + "tenants.shop.template.fr.reply.WELCOME=Bonjour\n");
+
+        assertThatThrownBy(registry::load)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("reply.WELCOME");
+    }
+
+    @Test
+    void keepsCurrentVersionWhenReloadIsRejected() throws IOException {
+        Path file = useFile(TENANTS);
+        registry.load();
+        TenantRuntime shop = registry.get("shop").orElseThrow();
+
+        Files.writeString(file, TENANTS + "tenants.other.phone-number-id=111\ntenants.other.access-token=tok\n", StandardCharsets.UTF_8);
+        assertThat(registry.reload()).isFalse();
+        assertThat(registry.getLastError()).contains("111");
+        assertThat(registry.getVersion()).isEqualTo(1);
+        assertThat(registry.findByPhoneNumberId("111")).containsSame(shop);
+
+        Files.writeString(file, TENANTS + "tenants.other.phone-number-id=333\ntenants.other.access-token=tok\n", StandardCharsets.UTF_8);
+        assertThat(registry.reload()).isTrue();
+        assertThat(registry.getLastError()).isNull();
+        assertThat(registry.getVersion()).isEqualTo(2);
+        assertThat(registry.findByPhoneNumberId("333")).map(TenantRuntime::getId).contains("other");
+        assertThat(registry.findByPhoneNumberId("111")).isNotSameAs(shop);
+    }
+
+    @Test
+    void admitsWebhookMessagesAllOrNothing() throws Exception {
+        useFile(TENANTS);
+        registry.load();
+        // 2 workers + 3 messages en file
+        TenantRuntime shop = registry.get("shop").orElseThrow();
+
+        assertThat(shop.tryAdmit(4)).isTrue();
+        assertThat(shop.tryAdmit(2)).isFalse();
+        assertThat(shop.tryAdmit(1)).isTrue();
+        assertThat(registry.getStatus()).filteredOn(status -> status.getId().equals("shop"))
+                .singleElement().extracting("rejectedMessages").isEqualTo(2L);
+
+        // Chaque message traité rend sa place
+        CountDownLatch done = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            shop.execute("3367000000" + i, () -> {
+                done.countDown();
+                return null;
+            });
+        }
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        awaitAdmission(shop, 5);
+    }
+
+    private void awaitAdmission(TenantRuntime tenant, int messages) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!tenant.tryAdmit(messages)) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+        tenant.release(messages);
+    }
+
+    private Path useFile(String content) throws IOException {
+        Path file = directory.resolve("tenants.properties");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        ReflectionTestUtils.setField(registry, "tenantsFile", file.toString());
+        return file;
+    }
+}
@@ -0,0 +1,187 @@
+package com.st.chatbot_whatsapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.st.chatbot_whatsapp.dto.WebhookRequest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.StringJoiner;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Routage par numéro : chaque webhook est traité et répondu avec le jeton et les modèles du tenant destinataire
+ * et ceux d'un même utilisateur sont répondus dans l'ordre
+ * (API WhatsApp et OpenWeatherMap remplacées par un bouchon local qui enregistre les réponses)
+ */
+@SpringBootTest(properties = {
+        "analytics.directory=target/tenant-routing-test/analytics",
+        "whatsapp.broadcast.directory=target/tenant-routing-test/broadcasts"
+})
+class TenantRoutingTest {
+
+    private static final String TENANTS = """
+            tenants.shop.phone-number-id=111
+            tenants.shop.access-token=tok-shop
+            tenants.shop.template.fr.reply.GREETING=Bienvenue chez Shop %s !
+            tenants.bank.phone-number-id=222
+            tenants.bank.access-token=tok-bank
+            default=bank
+            """;
+
+    private static final String WEATHER_BODY = "{\"id\":2988507,\"name\":\"Paris\",\"dt\":1700000000,"
+            + "\"weather\":[{\"main\":\"Clear\",\"description\":\"ciel dégagé\"}],"
+            + "\"main\":{\"temp\":20.0,\"humidity\":50,\"pressure\":1013},\"wind\":{\"speed\":1.0},\"sys\":{\"country\":\"FR\"}}";
+
+    private static final BlockingQueue<Reply> replies = new LinkedBlockingQueue<>();
+    private static final HttpServer stub = startStub();
+
+    @Autowired
+    private WhatsAppService whatsAppService;
+
+    @Autowired
+    private ConversationContextService contextService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void tenantProperties(DynamicPropertyRegistry registry) throws IOException {
+        Path file = Path.of("target/tenant-routing-test/tenants.properties");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, TENANTS, StandardCharsets.UTF_8);
+
+        String baseUrl = "http://localhost:" + stub.getAddress().getPort();
+        registry.add("whatsapp.tenants.file", file::toString);
+        registry.add("whatsapp.api.url", () -> baseUrl);
+        registry.add("weather.api.url", () -> baseUrl + "/weather");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.stop(0);
+    }
+
+    @BeforeEach
+    void resetStub() {
+        replies.clear();
+    }
+
+    @Test
+    void repliesWithTokenAndTemplatesOfAddressedTenant() throws Exception {
+        assertThat(whatsAppService.processIncomingMessage(webhook("111", "33670000001", "bonjour"))).isTrue();
+        Reply shop = replies.poll(5, TimeUnit.SECONDS);
+        assertThat(shop).isNotNull();
+        assertThat(shop.path()).isEqualTo("/111/messages");
+        assertThat(shop.authorization()).isEqualTo("Bearer tok-shop");
+        assertThat(shop.body()).contains("Bienvenue chez Shop").contains("33670000001");
+
+        assertThat(whatsAppService.processIncomingMessage(webhook("222", "33670000002", "bonjour"))).isTrue();
+        Reply bank = replies.poll(5, TimeUnit.SECONDS);
+        assertThat(bank).isNotNull();
+        assertThat(bank.path()).isEqualTo("/222/messages");
+        assertThat(bank.authorization()).isEqualTo("Bearer tok-bank");
+        assertThat(bank.body()).doesNotContain("Shop");
+
+        // Le contexte de conversation est propre à chaque tenant
+        assertThat(contextService.streamRecentUserIds("shop", Duration.ofHours(1))).contains("33670000001").doesNotContain("33670000002");
+    }
+
+    @Test
+    void usesDefaultTenantWithoutMetadataAndIgnoresUnknownNumbers() throws Exception {
+        assertThat(whatsAppService.processIncomingMessage(webhook(null, "33670000003", "bonjour"))).isTrue();
+        Reply reply = replies.poll(5, TimeUnit.SECONDS);
+        assertThat(reply).isNotNull();
+        assertThat(reply.path()).isEqualTo("/222/messages");
+        assertThat(reply.authorization()).isEqualTo("Bearer tok-bank");
+
+        whatsAppService.processIncomingMessage(webhook("999", "33670000004", "bonjour"));
+        assertThat(replies.poll(500, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void repliesToMessagesOfOneUserInOrder() throws Exception {
+        // La réponse météo attend le bouchon OpenWeatherMap ; la salutation suivante ne doit pas la doubler
+        assertThat(whatsAppService.processIncomingMessage(webhook("222", "33670000005", "météo à Paris", "bonjour"))).isTrue();
+
+        Reply first = replies.poll(5, TimeUnit.SECONDS);
+        Reply second = replies.poll(5, TimeUnit.SECONDS);
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(first.body()).contains("Météo à Paris");
+        assertThat(second.body()).doesNotContain("Météo à");
+        assertThat(contextService.getContext("bank", "33670000005").getMessageHistory())
+                .containsExactly("météo à Paris", "bonjour");
+    }
+
+    private WebhookRequest webhook(String phoneNumberId, String from, String... texts) {
+        String metadata = phoneNumberId == null ? "" : "\"metadata\":{\"phone_number_id\":\"" + phoneNumberId + "\"},";
+        StringJoiner messages = new StringJoiner(",", "[", "]");
+        for (String text : texts) {
+            messages.add("{\"from\":\"" + from + "\",\"type\":\"text\",\"text\":{\"body\":\"" + text + "\"}}");
+        }
+        String json = "{\"object\":\"whatsapp_business_account\",\"entry\":[{\"changes\":[{\"value\":{" + metadata
+                + "\"messages\":" + messages + "}}]}]}";
+        try {
+            return objectMapper.readValue(json, WebhookRequest.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static HttpServer startStub() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/", TenantRoutingTest::handle);
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * /weather répond la météo de Paris après un délai, le reste enregistre les réponses envoyées
+     */
+    private static void handle(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        boolean weather = exchange.getRequestURI().getPath().startsWith("/weather");
+        if (weather) {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            replies.add(new Reply(exchange.getRequestURI().getPath(), exchange.getRequestHeaders().getFirst("Authorization"), body));
+        }
+
+        byte[] response = (weather ? WEATHER_BODY : "{\"messages\":[{\"id\":\"wamid.test\"}]}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        exchange.getResponseBody().write(response);
+        exchange.close();
+    }
+
+    private record Reply(String path, String authorization, String body) {
+    }
+}